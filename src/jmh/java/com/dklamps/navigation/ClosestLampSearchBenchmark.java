@@ -0,0 +1,110 @@
+package com.dklamps.navigation;
+
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.LampSearchMode;
+import com.dklamps.pathfinder.BenchmarkTiles;
+import com.dklamps.pathfinder.CollisionMap;
+import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.pathfinder.SplitFlagMap;
+import com.dklamps.state.LampStateMask;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.coords.WorldPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sequential and parallel closest-lamp search on the same random scenarios: every lamp's standing
+ * tile is used once as the start with ten random broken lamps, one scenario per operation. Setup
+ * fails when both modes do not pick the same lamps at the same distances.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClosestLampSearchBenchmark
+{
+	private static final int BROKEN_LAMPS = 10;
+
+	@Param
+	public LampSearchMode mode;
+
+	private ForkJoinPool pool;
+	private ClosestLampSearch search;
+	private WorldPoint[] starts;
+	private long[] scenarios;
+	private int next;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		Pathfinder pathfinder = new Pathfinder();
+		pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		search = new ClosestLampSearch(pathfinder, pool);
+		starts = BenchmarkTiles.standingTiles(new CollisionMap(SplitFlagMap.loadFromResources()));
+
+		Random random = new Random(42);
+		List<Lamp> lamps = Arrays.asList(Lamp.values());
+		scenarios = new long[lamps.size()];
+		for (int i = 0; i < lamps.size(); i++)
+		{
+			List<Lamp> shuffled = new ArrayList<>(lamps);
+			Collections.shuffle(shuffled, random);
+			for (Lamp lamp : shuffled.subList(0, BROKEN_LAMPS))
+			{
+				scenarios[i] |= LampStateMask.bit(lamp);
+			}
+		}
+
+		String[] sequential = results(LampSearchMode.SEQUENTIAL);
+		String[] parallel = results(LampSearchMode.PARALLEL);
+		if (!Arrays.equals(sequential, parallel))
+		{
+			throw new IllegalStateException("Sequential and parallel search disagree: "
+				+ Arrays.toString(sequential) + " vs " + Arrays.toString(parallel));
+		}
+		next = 0;
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		pool.shutdownNow();
+	}
+
+	@Benchmark
+	public ClosestLampSearch.Result find()
+	{
+		int scenario = next;
+		next = scenario + 1 == scenarios.length ? 0 : scenario + 1;
+		return search.find(starts[scenario], scenarios[scenario], mode, () -> false);
+	}
+
+	private String[] results(LampSearchMode searchMode)
+	{
+		String[] results = new String[scenarios.length];
+		for (int i = 0; i < scenarios.length; i++)
+		{
+			ClosestLampSearch.Result result = search.find(starts[i], scenarios[i], searchMode, () -> false);
+			results[i] = result == null ? "none" : result.getLamp() + "@" + result.getDistance();
+		}
+		return results;
+	}
+}
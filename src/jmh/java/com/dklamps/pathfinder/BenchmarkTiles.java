@@ -0,0 +1,114 @@
+package com.dklamps.pathfinder;
+
+import com.dklamps.enums.Direction;
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.Transport;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Tiles the benchmarks start from. Lamps themselves are not walkable, so a route that starts at a
+ * lamp starts on the tile the player stands on to fix it.
+ */
+public final class BenchmarkTiles
+{
+	private static final Direction[] CARDINALS = {Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST};
+
+	// Regions 42_82 and 42_83, the only ones in the bundled collision data
+	public static final int MIN_X = 42 * 64;
+	public static final int MIN_Y = 82 * 64;
+	public static final int MAX_X = MIN_X + 63;
+	public static final int MAX_Y = MIN_Y + 127;
+	public static final int PLANES = 3;
+
+	private BenchmarkTiles()
+	{
+	}
+
+	/**
+	 * @return the first walkable tile next to {@code lamp} that its fix can be reached from
+	 */
+	public static WorldPoint standingTile(CollisionMap collisionMap, Lamp lamp)
+	{
+		return walkableNeighbour(collisionMap, lamp.getWorldPoint(), lamp.getUnreachableDirections());
+	}
+
+	/**
+	 * @return {@code location} when it is walkable, its first walkable neighbour otherwise
+	 */
+	public static WorldPoint standingTile(CollisionMap collisionMap, WorldPoint location)
+	{
+		if (!collisionMap.isBlocked(location.getX(), location.getY(), location.getPlane()))
+		{
+			return location;
+		}
+		return walkableNeighbour(collisionMap, location, Collections.emptyList());
+	}
+
+	private static WorldPoint walkableNeighbour(CollisionMap collisionMap, WorldPoint location,
+		Collection<Direction> excluded)
+	{
+		for (Direction direction : CARDINALS)
+		{
+			if (excluded.contains(direction))
+			{
+				continue;
+			}
+
+			WorldPoint tile = location.dx(direction.getX()).dy(direction.getY());
+			if (!collisionMap.isBlocked(tile.getX(), tile.getY(), tile.getPlane()))
+			{
+				return tile;
+			}
+		}
+		throw new IllegalStateException("No walkable tile next to " + location);
+	}
+
+	public static WorldPoint[] standingTiles(CollisionMap collisionMap)
+	{
+		Lamp[] lamps = Lamp.values();
+		WorldPoint[] tiles = new WorldPoint[lamps.length];
+		for (int i = 0; i < lamps.length; i++)
+		{
+			tiles[i] = standingTile(collisionMap, lamps[i]);
+		}
+		return tiles;
+	}
+
+	/**
+	 * Every tile of the collision data that can be left in at least one direction.
+	 */
+	public static List<WorldPoint> walkableTiles(CollisionMap collisionMap)
+	{
+		List<WorldPoint> tiles = new ArrayList<>();
+		for (int z = 0; z < PLANES; z++)
+		{
+			for (int y = MIN_Y; y <= MAX_Y; y++)
+			{
+				for (int x = MIN_X; x <= MAX_X; x++)
+				{
+					if (!collisionMap.isBlocked(x, y, z))
+					{
+						tiles.add(new WorldPoint(x, y, z));
+					}
+				}
+			}
+		}
+		return tiles;
+	}
+
+	public static Map<WorldPoint, List<Transport>> transportsByOrigin()
+	{
+		Map<WorldPoint, List<Transport>> transports = new HashMap<>();
+		for (Transport transport : Transport.values())
+		{
+			transports.computeIfAbsent(transport.getOrigin(), k -> new ArrayList<>()).add(transport);
+		}
+		return transports;
+	}
+}
@@ -0,0 +1,58 @@
+package com.dklamps.pathfinder;
+
+import com.dklamps.enums.Transport;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.coords.WorldPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CollisionMap#getValidNeighbors} on every walkable tile of the collision data in turn, with
+ * the transports the pathfinder passes it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionMapBenchmark
+{
+	private CollisionMap collisionMap;
+	private Map<WorldPoint, List<Transport>> transports;
+	private Node[] nodes;
+	private int next;
+
+	@Setup
+	public void setUp()
+	{
+		collisionMap = new CollisionMap(SplitFlagMap.loadFromResources());
+		transports = BenchmarkTiles.transportsByOrigin();
+
+		List<WorldPoint> tiles = BenchmarkTiles.walkableTiles(collisionMap);
+		nodes = new Node[tiles.size()];
+		for (int i = 0; i < nodes.length; i++)
+		{
+			nodes[i] = new Node(tiles.get(i));
+		}
+		next = 0;
+	}
+
+	@Benchmark
+	public List<Node> getValidNeighbors()
+	{
+		int node = next;
+		next = node + 1 == nodes.length ? 0 : node + 1;
+		return collisionMap.getValidNeighbors(nodes[node], transports);
+	}
+}
@@ -0,0 +1,98 @@
+package com.dklamps.pathfinder;
+
+import com.dklamps.DKLampsConstants;
+import com.dklamps.enums.Lamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.coords.WorldPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Pathfinder#findPath} over a fixed route set, one route per operation in a fixed cycle, so
+ * the score is paths per second averaged over every route in the set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathfinderBenchmark
+{
+	public enum Routes
+	{
+		// Every ordered pair of lamps, from the tile the first one is fixed on
+		LAMP_TO_LAMP,
+		BANK_TO_LAMP,
+		WIRE_MACHINE_TO_LAMP
+	}
+
+	@Param
+	public Routes routes;
+
+	private Pathfinder pathfinder;
+	private WorldPoint[] starts;
+	private WorldPoint[] ends;
+	private int next;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		pathfinder = new Pathfinder();
+		CollisionMap collisionMap = new CollisionMap(SplitFlagMap.loadFromResources());
+		Lamp[] lamps = Lamp.values();
+
+		List<WorldPoint> routeStarts = new ArrayList<>();
+		List<WorldPoint> routeEnds = new ArrayList<>();
+		switch (routes)
+		{
+			case LAMP_TO_LAMP:
+				WorldPoint[] standingTiles = BenchmarkTiles.standingTiles(collisionMap);
+				for (int from = 0; from < lamps.length; from++)
+				{
+					for (int to = 0; to < lamps.length; to++)
+					{
+						if (from != to)
+						{
+							routeStarts.add(standingTiles[from]);
+							routeEnds.add(lamps[to].getWorldPoint());
+						}
+					}
+				}
+				break;
+			case BANK_TO_LAMP:
+			case WIRE_MACHINE_TO_LAMP:
+				WorldPoint start = BenchmarkTiles.standingTile(collisionMap, routes == Routes.BANK_TO_LAMP
+					? DKLampsConstants.BANK_LOCATION : DKLampsConstants.WIRE_MACHINE_LOCATION);
+				for (Lamp lamp : lamps)
+				{
+					routeStarts.add(start);
+					routeEnds.add(lamp.getWorldPoint());
+				}
+				break;
+		}
+
+		starts = routeStarts.toArray(new WorldPoint[0]);
+		ends = routeEnds.toArray(new WorldPoint[0]);
+		next = 0;
+	}
+
+	@Benchmark
+	public List<WorldPoint> findPath()
+	{
+		int route = next;
+		next = route + 1 == starts.length ? 0 : route + 1;
+		return pathfinder.findPath(starts[route], ends[route]);
+	}
+}
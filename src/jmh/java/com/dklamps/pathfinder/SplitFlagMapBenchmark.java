@@ -0,0 +1,59 @@
+package com.dklamps.pathfinder;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Flag lookups over every tile of the bundled regions in turn, and loading those regions from the
+ * plugin resources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitFlagMapBenchmark
+{
+	private static final int WIDTH = BenchmarkTiles.MAX_X - BenchmarkTiles.MIN_X + 1;
+	private static final int HEIGHT = BenchmarkTiles.MAX_Y - BenchmarkTiles.MIN_Y + 1;
+	private static final int TILES = WIDTH * HEIGHT * BenchmarkTiles.PLANES;
+
+	private SplitFlagMap map;
+	private int next;
+
+	@Setup
+	public void setUp()
+	{
+		map = SplitFlagMap.loadFromResources();
+		next = 0;
+	}
+
+	@Benchmark
+	public boolean get()
+	{
+		int tile = next;
+		next = tile + 1 == TILES ? 0 : tile + 1;
+
+		int x = BenchmarkTiles.MIN_X + tile % WIDTH;
+		int y = BenchmarkTiles.MIN_Y + tile / WIDTH % HEIGHT;
+		int z = tile / (WIDTH * HEIGHT);
+		return map.get(x, y, z, tile & 1);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public SplitFlagMap loadFromResources()
+	{
+		return SplitFlagMap.loadFromResources();
+	}
+}
@@ -0,0 +1,339 @@
+package com.dklamps.simulation;
+
+import com.dklamps.DKLampsConstants;
+import com.dklamps.DKLampsHelper;
+import com.dklamps.enums.Area;
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.LampSearchMode;
+import com.dklamps.enums.TargetType;
+import com.dklamps.enums.Transport;
+import com.dklamps.navigation.NavigationSnapshot;
+import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.state.LampStateMask;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import lombok.Getter;
+import net.runelite.api.GameObject;
+import net.runelite.api.GameState;
+import net.runelite.api.Item;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.VarbitChanged;
+
+/**
+ * Dorgesh-Kaan without a game client. The plugin's state manager, navigation manager and
+ * pathfinder run unmodified in a {@link PluginHarness}, and a simulated player walks whatever path
+ * the plugin publishes. Searches run on the ticking thread, so every route is ready on the tick
+ * that asked for it and runs are reproducible from their seed.
+ *
+ * <p>The world follows the rules the plugin relies on:
+ * <ul>
+ * <li>{@link DKLampsConstants#TOTAL_BROKEN_LAMPS} lamps are broken at a time, and fixing one breaks
+ * another at random;</li>
+ * <li>the lamp varbit only describes the lamps observed from the player's area, so lamps of the
+ * opposite area on a shared bit position stay hidden;</li>
+ * <li>the bank hands out {@link #BULBS_PER_TRIP} working bulbs, a fix turns a working bulb into an
+ * empty one, and the wire machine refills every empty bulb and then needs
+ * {@link DKLampsConstants#WIRE_RESPAWN_TICKS} to come back;</li>
+ * <li>the player runs two path tiles per tick and spends a transport's duration on stairs.</li>
+ * </ul>
+ * There are no chat hints or hint arrows, so routing only has the varbit to go on.
+ */
+public class DorgeshKaanSimulation implements SimulatedClient.World
+{
+	private static final int WORLD = 301;
+	private static final int RUN_TILES_PER_TICK = 2;
+	private static final int BULBS_PER_TRIP = 27;
+	private static final int FIX_TICKS = 2;
+	private static final int BANK_TICKS = 2;
+	private static final int WIRE_MACHINE_TICKS = 1;
+
+	private final Random random;
+	private final Pathfinder pathfinder;
+	private final PluginHarness plugin;
+
+	@Getter
+	private int tick = 0;
+	@Getter
+	private WorldPoint location;
+	private long broken = 0L;
+	private int lastVarbit = -1;
+
+	private int workingBulbs = 0;
+	private int emptyBulbs = 0;
+	private Item[] items = new Item[0];
+
+	private GameObject wireMachine;
+	private int wireRespawnTick = -1;
+	private int busyUntilTick = 0;
+
+	private List<WorldPoint> walkingPath;
+	private int walkingIndex;
+	private Lamp targetLamp;
+
+	@Getter
+	private int lampsFixed = 0;
+	@Getter
+	private int stalledTicks = 0;
+	// Times the plugin switched to another lamp while the one it was heading to was still broken
+	@Getter
+	private int retargets = 0;
+
+	public DorgeshKaanSimulation(Pathfinder pathfinder, ForkJoinPool lampSearchPool, LampSearchMode searchMode,
+		WorldPoint start, long seed) throws IOException
+	{
+		this.random = new Random(seed);
+		this.pathfinder = pathfinder;
+		this.location = start;
+
+		plugin = new PluginHarness(this, pathfinder, lampSearchPool, searchMode);
+
+		Lamp[] lamps = Lamp.values();
+		while (Long.bitCount(broken) < DKLampsConstants.TOTAL_BROKEN_LAMPS)
+		{
+			broken |= LampStateMask.bit(lamps[random.nextInt(lamps.length)]);
+		}
+
+		plugin.onGameStateChanged(GameState.LOGGED_IN);
+		spawnWireMachine(DKLampsConstants.WIRE_MACHINE_ACTIVE);
+	}
+
+	/**
+	 * Advances the world by one tick, then runs the plugin's tick on it.
+	 */
+	public void tick()
+	{
+		tick++;
+		advanceWorld();
+		publishVarbit();
+		plugin.tick();
+	}
+
+	public double getLampsPerHour()
+	{
+		return tick == 0 ? 0 : lampsFixed * 3_600_000.0 / ((long) tick * DKLampsConstants.GAME_TICK_MILLIS);
+	}
+
+	public long getPluginCpuNanos()
+	{
+		return plugin.getPluginCpuNanos();
+	}
+
+	public long getPluginWallNanos()
+	{
+		return plugin.getPluginWallNanos();
+	}
+
+	public long getMaxPluginWallNanos()
+	{
+		return plugin.getMaxPluginWallNanos();
+	}
+
+	private void advanceWorld()
+	{
+		if (wireRespawnTick >= 0 && tick >= wireRespawnTick)
+		{
+			spawnWireMachine(DKLampsConstants.WIRE_MACHINE_ACTIVE);
+		}
+		if (tick < busyUntilTick)
+		{
+			return;
+		}
+
+		NavigationSnapshot snapshot = plugin.getNavigationManager().getSnapshot();
+		Lamp nextTarget = snapshot.getTargetLamp();
+		if (nextTarget != targetLamp && nextTarget != null && targetLamp != null
+			&& (broken & LampStateMask.bit(targetLamp)) != 0)
+		{
+			retargets++;
+		}
+		targetLamp = nextTarget;
+
+		if (!interact(plugin.getNavigationManager().getCurrentTargetType(), snapshot) && !walk(snapshot))
+		{
+			stalledTicks++;
+		}
+	}
+
+	private boolean interact(TargetType targetType, NavigationSnapshot snapshot)
+	{
+		switch (targetType)
+		{
+			case BANK:
+				if (workingBulbs + emptyBulbs == 0 && DKLampsHelper.isInBankArea(location))
+				{
+					setBulbs(BULBS_PER_TRIP, 0);
+					busyUntilTick = tick + BANK_TICKS;
+					return true;
+				}
+				return false;
+			case WIRING_MACHINE:
+				if (emptyBulbs > 0 && wireRespawnTick < 0 && isNextTo(DKLampsConstants.WIRE_MACHINE_LOCATION))
+				{
+					setBulbs(workingBulbs + emptyBulbs, 0);
+					spawnWireMachine(DKLampsConstants.WIRE_MACHINE_INACTIVE);
+					busyUntilTick = tick + WIRE_MACHINE_TICKS;
+					return true;
+				}
+				return false;
+			case LAMP:
+				Lamp lamp = snapshot.getTargetLamp();
+				if (lamp != null && workingBulbs > 0 && (broken & LampStateMask.bit(lamp)) != 0
+					&& isNextTo(lamp.getWorldPoint()))
+				{
+					fix(lamp);
+					busyUntilTick = tick + FIX_TICKS;
+					return true;
+				}
+				return false;
+			default:
+				return false;
+		}
+	}
+
+	private boolean walk(NavigationSnapshot snapshot)
+	{
+		List<WorldPoint> path = snapshot.getPath();
+		int index = path == walkingPath ? walkingIndex : path.indexOf(location);
+		if (index < 0 || index >= path.size() - 1)
+		{
+			return false;
+		}
+
+		for (int step = 0; step < RUN_TILES_PER_TICK && index < path.size() - 1; step++)
+		{
+			WorldPoint next = path.get(index + 1);
+			if (next.getPlane() == location.getPlane() && next.distanceTo2D(location) <= 1)
+			{
+				location = next;
+				index++;
+				continue;
+			}
+
+			Transport transport = transportTo(next);
+			if (transport == null)
+			{
+				// A fallback straight line, not something a player can walk
+				return step > 0;
+			}
+			location = next;
+			index++;
+			busyUntilTick = tick + Math.max(1, transport.getDuration());
+			break;
+		}
+
+		walkingPath = path;
+		walkingIndex = index;
+		return true;
+	}
+
+	private Transport transportTo(WorldPoint destination)
+	{
+		for (Transport transport : pathfinder.getTransportsAt(location))
+		{
+			if (transport.getDestination().equals(destination))
+			{
+				return transport;
+			}
+		}
+		return null;
+	}
+
+	private void fix(Lamp lamp)
+	{
+		broken &= ~LampStateMask.bit(lamp);
+		setBulbs(workingBulbs - 1, emptyBulbs + 1);
+		lampsFixed++;
+
+		Lamp[] lamps = Lamp.values();
+		while (Long.bitCount(broken) < DKLampsConstants.TOTAL_BROKEN_LAMPS)
+		{
+			Lamp next = lamps[random.nextInt(lamps.length)];
+			if (next != lamp)
+			{
+				broken |= LampStateMask.bit(next);
+			}
+		}
+	}
+
+	private boolean isNextTo(WorldPoint target)
+	{
+		return target.getPlane() == location.getPlane() && target.distanceTo2D(location) <= 1;
+	}
+
+	private void publishVarbit()
+	{
+		int varbit = getVarbit();
+		if (varbit != lastVarbit)
+		{
+			lastVarbit = varbit;
+			VarbitChanged event = new VarbitChanged();
+			event.setVarbitId(DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT);
+			event.setValue(varbit);
+			plugin.getStateManager().onVarbitChanged(event);
+		}
+	}
+
+	private void spawnWireMachine(int id)
+	{
+		if (wireMachine != null)
+		{
+			plugin.getStateManager().onGameObjectDespawned(wireMachine);
+		}
+		wireMachine = SimulatedClient.gameObject(id, DKLampsConstants.WIRE_MACHINE_LOCATION);
+		wireRespawnTick = id == DKLampsConstants.WIRE_MACHINE_INACTIVE ? tick + DKLampsConstants.WIRE_RESPAWN_TICKS : -1;
+		plugin.getStateManager().onGameObjectSpawned(wireMachine);
+	}
+
+	private void setBulbs(int working, int empty)
+	{
+		workingBulbs = working;
+		emptyBulbs = empty;
+		items = SimulatedClient.items(working, empty);
+	}
+
+	/**
+	 * The varbit as the game sends it in the player's area: one bit per position, set when the
+	 * lamp observed on that position from here is broken.
+	 */
+	@Override
+	public int getVarbit()
+	{
+		Area area = DKLampsHelper.getArea(location);
+		int varbit = 0;
+		for (long observed = broken & LampStateMask.observedMask(area); observed != 0; observed &= observed - 1)
+		{
+			varbit |= 1 << LampStateMask.lamp(Long.numberOfTrailingZeros(observed)).getBitPosition();
+		}
+		return varbit;
+	}
+
+	@Override
+	public Item[] getItems()
+	{
+		return items;
+	}
+
+	@Override
+	public int count(int itemId)
+	{
+		if (itemId == DKLampsConstants.LIGHT_BULB_WORKING)
+		{
+			return workingBulbs;
+		}
+		return itemId == DKLampsConstants.LIGHT_BULB_EMPTY ? emptyBulbs : 0;
+	}
+
+	@Override
+	public int getWorld()
+	{
+		return WORLD;
+	}
+
+	@Override
+	public WorldPoint getHintArrow()
+	{
+		return null;
+	}
+}
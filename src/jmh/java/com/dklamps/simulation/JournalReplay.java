@@ -0,0 +1,273 @@
+package com.dklamps.simulation;
+
+import com.dklamps.DKLampsConstants;
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.LampSearchMode;
+import com.dklamps.enums.TargetType;
+import com.dklamps.journal.EventJournal;
+import com.dklamps.navigation.NavigationSnapshot;
+import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.pathfinder.WorldPointUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import lombok.Getter;
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.GameObject;
+import net.runelite.api.GameState;
+import net.runelite.api.Item;
+import net.runelite.api.WallObject;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.VarbitChanged;
+
+/**
+ * Feeds a recorded {@link EventJournal} through the plugin's state and navigation managers as fast
+ * as they will go. The client answers from the journal, so the managers see the same events and
+ * the same game state in the same order as when it was recorded.
+ *
+ * <p>Every tick's target and the path the plugin publishes are folded into a route digest. Replays
+ * of the same journal on the same code always give the same digest, so a change that moves the
+ * digest changed the routing, and one that does not only changed how long it took.
+ *
+ * <p>The pathfinder's metrics for each journal are printed after its row.
+ *
+ * <p>Arguments are journal files, plus an optional {@code mode=} {@link LampSearchMode} (default
+ * {@code SEQUENTIAL}).
+ */
+public class JournalReplay implements EventJournal.Visitor, SimulatedClient.World
+{
+	private final PluginHarness plugin;
+	// Spawned objects by id and location, so a despawn hands the managers the object they were given
+	private final Map<Long, GameObject> gameObjects = new HashMap<>();
+	private final Map<Long, WallObject> wallObjects = new HashMap<>();
+
+	@Getter
+	private int tick = 0;
+	@Getter
+	private WorldPoint location;
+	@Getter
+	private int varbit = 0;
+	@Getter
+	private int world = 0;
+	@Getter
+	private WorldPoint hintArrow;
+	private int workingBulbs = 0;
+	private int emptyBulbs = 0;
+	private Item[] items = new Item[0];
+
+	@Getter
+	private int ticks = 0;
+	@Getter
+	private int targetChanges = 0;
+	@Getter
+	private long routeDigest = 17;
+	private TargetType lastTargetType;
+	private Lamp lastTargetLamp;
+	private List<WorldPoint> lastPath;
+
+	public JournalReplay(Pathfinder pathfinder, ForkJoinPool lampSearchPool, LampSearchMode searchMode)
+		throws IOException
+	{
+		plugin = new PluginHarness(this, pathfinder, lampSearchPool, searchMode);
+	}
+
+	public void replay(File journal) throws IOException
+	{
+		EventJournal.read(journal, this);
+	}
+
+	@Override
+	public void onTick(int tick, WorldPoint location, int workingBulbs, int emptyBulbs, WorldPoint hintArrow)
+	{
+		this.tick = tick;
+		this.location = location;
+		this.hintArrow = hintArrow;
+		if (workingBulbs != this.workingBulbs || emptyBulbs != this.emptyBulbs)
+		{
+			this.workingBulbs = workingBulbs;
+			this.emptyBulbs = emptyBulbs;
+			items = SimulatedClient.items(workingBulbs, emptyBulbs);
+		}
+
+		plugin.tick();
+		ticks++;
+
+		TargetType targetType = plugin.getNavigationManager().getCurrentTargetType();
+		NavigationSnapshot snapshot = plugin.getNavigationManager().getSnapshot();
+		Lamp targetLamp = snapshot.getTargetLamp();
+		if (targetType != lastTargetType || targetLamp != lastTargetLamp)
+		{
+			targetChanges++;
+			lastTargetType = targetType;
+			lastTargetLamp = targetLamp;
+		}
+
+		routeDigest = 31 * routeDigest + (targetType == null ? -1 : targetType.ordinal());
+		routeDigest = 31 * routeDigest + (targetLamp == null ? -1 : targetLamp.ordinal());
+		if (snapshot.getPath() != lastPath)
+		{
+			lastPath = snapshot.getPath();
+			routeDigest = 31 * routeDigest + lastPath.hashCode();
+		}
+	}
+
+	@Override
+	public void onVarbit(int value)
+	{
+		varbit = value;
+		VarbitChanged event = new VarbitChanged();
+		event.setVarbitId(DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT);
+		event.setValue(value);
+		plugin.getStateManager().onVarbitChanged(event);
+	}
+
+	@Override
+	public void onGameObject(boolean spawned, int id, WorldPoint location)
+	{
+		long key = key(id, location);
+		if (spawned)
+		{
+			GameObject gameObject = SimulatedClient.gameObject(id, location);
+			gameObjects.put(key, gameObject);
+			plugin.getStateManager().onGameObjectSpawned(gameObject);
+			return;
+		}
+
+		GameObject gameObject = gameObjects.remove(key);
+		if (gameObject != null)
+		{
+			plugin.getStateManager().onGameObjectDespawned(gameObject);
+		}
+	}
+
+	@Override
+	public void onWallObject(boolean spawned, int id, WorldPoint location)
+	{
+		long key = key(id, location);
+		if (spawned)
+		{
+			WallObject wallObject = SimulatedClient.wallObject(id, location);
+			wallObjects.put(key, wallObject);
+			plugin.getStateManager().onWallObjectSpawned(wallObject);
+			return;
+		}
+
+		WallObject wallObject = wallObjects.remove(key);
+		if (wallObject != null)
+		{
+			plugin.getStateManager().onWallObjectDespawned(wallObject);
+		}
+	}
+
+	@Override
+	public void onChatMessage(ChatMessageType type, String message)
+	{
+		ChatMessage event = new ChatMessage();
+		event.setType(type);
+		event.setMessage(message);
+		plugin.onChatMessage(event);
+	}
+
+	@Override
+	public void onGameState(GameState state, int world)
+	{
+		this.world = world;
+		if (state != GameState.LOGGED_IN)
+		{
+			// The scene is unloaded, and the client sends spawns again once it is back
+			gameObjects.clear();
+			wallObjects.clear();
+		}
+		plugin.onGameStateChanged(state);
+	}
+
+	@Override
+	public Item[] getItems()
+	{
+		return items;
+	}
+
+	@Override
+	public int count(int itemId)
+	{
+		if (itemId == DKLampsConstants.LIGHT_BULB_WORKING)
+		{
+			return workingBulbs;
+		}
+		return itemId == DKLampsConstants.LIGHT_BULB_EMPTY ? emptyBulbs : 0;
+	}
+
+	public long getPluginCpuNanos()
+	{
+		return plugin.getPluginCpuNanos();
+	}
+
+	public long getPluginWallNanos()
+	{
+		return plugin.getPluginWallNanos();
+	}
+
+	public long getMaxPluginWallNanos()
+	{
+		return plugin.getMaxPluginWallNanos();
+	}
+
+	private static long key(int id, WorldPoint location)
+	{
+		return (long) id << 32 | WorldPointUtil.packWorldPoint(location) & 0xFFFFFFFFL;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		LampSearchMode mode = LampSearchMode.SEQUENTIAL;
+		List<File> journals = new ArrayList<>();
+		for (String arg : args)
+		{
+			if (arg.startsWith("mode="))
+			{
+				mode = LampSearchMode.valueOf(arg.substring("mode=".length()));
+			}
+			else
+			{
+				journals.add(new File(arg));
+			}
+		}
+		if (journals.isEmpty())
+		{
+			System.err.println("Usage: JournalReplay [mode=SEQUENTIAL|PARALLEL] journal.dkj...");
+			System.exit(2);
+		}
+
+		Pathfinder pathfinder = new Pathfinder();
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+		System.out.printf("%-32s %8s %12s %12s %12s %9s %18s%n",
+			"journal", "ticks", "cpu us/tick", "wall us/tick", "max wall ms", "targets", "route digest");
+		for (File journal : journals)
+		{
+			JournalReplay replay = new JournalReplay(pathfinder, pool, mode);
+			pathfinder.getMetrics().reset();
+			long start = System.nanoTime();
+			replay.replay(journal);
+			long elapsed = System.nanoTime() - start;
+
+			int ticks = Math.max(1, replay.getTicks());
+			System.out.printf("%-32s %8d %12.1f %12.1f %12.2f %9d %18s%n", journal.getName(),
+				replay.getTicks(),
+				replay.getPluginCpuNanos() / 1000.0 / ticks,
+				replay.getPluginWallNanos() / 1000.0 / ticks,
+				replay.getMaxPluginWallNanos() / 1_000_000.0,
+				replay.getTargetChanges(),
+				Long.toHexString(replay.getRouteDigest()));
+			System.out.printf("  replayed in %.1f s%n", elapsed / 1e9);
+			pathfinder.getMetrics().writeTo(new OutputStreamWriter(System.out));
+		}
+		pool.shutdownNow();
+	}
+}
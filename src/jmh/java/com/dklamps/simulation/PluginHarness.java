@@ -0,0 +1,97 @@
+package com.dklamps.simulation;
+
+import com.dklamps.DKLampsConfig;
+import com.dklamps.DKLampsGameTick;
+import com.dklamps.DKLampsNavigationManager;
+import com.dklamps.DKLampsStateManager;
+import com.dklamps.DKLampsStatsTracker;
+import com.dklamps.enums.LampSearchMode;
+import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.state.WorldLampCache;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ForkJoinPool;
+import lombok.Getter;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.events.ChatMessage;
+
+/**
+ * The plugin's state manager, stats tracker and navigation manager wired to a
+ * {@link SimulatedClient}, with the plugin's event handlers minus the panel and overlays. Searches
+ * run on the calling thread, so a route is ready on the tick that asked for it.
+ */
+final class PluginHarness
+{
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final DKLampsGameTick gameTick;
+	@Getter
+	private final DKLampsStatsTracker statsTracker;
+	@Getter
+	private final DKLampsStateManager stateManager;
+	@Getter
+	private final DKLampsNavigationManager navigationManager;
+
+	@Getter
+	private long pluginCpuNanos = 0;
+	@Getter
+	private long pluginWallNanos = 0;
+	@Getter
+	private long maxPluginWallNanos = 0;
+
+	PluginHarness(SimulatedClient.World world, Pathfinder pathfinder, ForkJoinPool lampSearchPool,
+		LampSearchMode searchMode) throws IOException
+	{
+		DKLampsConfig config = new DKLampsConfig()
+		{
+			@Override
+			public LampSearchMode lampSearchMode()
+			{
+				return searchMode;
+			}
+		};
+
+		File worldCacheFile = File.createTempFile("dklamps-simulation", ".dat");
+		worldCacheFile.deleteOnExit();
+
+		Client client = SimulatedClient.create(world);
+		statsTracker = new DKLampsStatsTracker();
+		stateManager = new DKLampsStateManager(client, statsTracker, new WorldLampCache(worldCacheFile, MoreExecutors.directExecutor()));
+		navigationManager = new DKLampsNavigationManager(client, config, pathfinder,
+			MoreExecutors.newDirectExecutorService(), lampSearchPool, statsTracker.getBreakModel());
+		gameTick = new DKLampsGameTick(client, stateManager, navigationManager, statsTracker);
+	}
+
+	void onGameStateChanged(GameState gameState)
+	{
+		stateManager.onGameStateChanged(gameState);
+		if (gameState == GameState.LOGIN_SCREEN)
+		{
+			statsTracker.endSession();
+		}
+	}
+
+	void onChatMessage(ChatMessage chatMessage)
+	{
+		stateManager.onChatMessage(chatMessage);
+		statsTracker.onChatMessage(chatMessage);
+	}
+
+	/**
+	 * The plugin's game tick steps, timed.
+	 */
+	void tick()
+	{
+		long cpuBefore = threads.getCurrentThreadCpuTime();
+		long wallBefore = System.nanoTime();
+		gameTick.countBulbs();
+		gameTick.update();
+		long wall = System.nanoTime() - wallBefore;
+		pluginCpuNanos += threads.getCurrentThreadCpuTime() - cpuBefore;
+		pluginWallNanos += wall;
+		maxPluginWallNanos = Math.max(maxPluginWallNanos, wall);
+	}
+}
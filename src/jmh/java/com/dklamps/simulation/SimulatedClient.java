@@ -0,0 +1,197 @@
+package com.dklamps.simulation;
+
+import com.dklamps.DKLampsConstants;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import net.runelite.api.Client;
+import net.runelite.api.GameObject;
+import net.runelite.api.GameState;
+import net.runelite.api.HintArrowType;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.Player;
+import net.runelite.api.TileObject;
+import net.runelite.api.WallObject;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Stand-ins for the parts of the RuneLite API the plugin reads during a tick, answering from a
+ * {@link World}. Everything else answers zero, false or {@code null}.
+ */
+final class SimulatedClient
+{
+	/**
+	 * What the client knows about the game at the current tick.
+	 */
+	interface World
+	{
+		int getTick();
+
+		WorldPoint getLocation();
+
+		int getVarbit();
+
+		Item[] getItems();
+
+		int count(int itemId);
+
+		int getWorld();
+
+		// A coordinate hint arrow, or null when there is none
+		WorldPoint getHintArrow();
+	}
+
+	private SimulatedClient()
+	{
+	}
+
+	static Client create(World world)
+	{
+		Player player = proxy(Player.class, (method, args) ->
+			"getWorldLocation".equals(method.getName()) ? world.getLocation() : null);
+
+		ItemContainer inventory = proxy(ItemContainer.class, (method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getItems":
+					return world.getItems();
+				case "size":
+					return world.getItems().length;
+				case "count":
+					return world.count((int) args[0]);
+				default:
+					return null;
+			}
+		});
+
+		return proxy(Client.class, (method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getLocalPlayer":
+					return player;
+				case "getTickCount":
+					return world.getTick();
+				case "getVarbitValue":
+					return (int) args[0] == DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT ? world.getVarbit() : 0;
+				case "getItemContainer":
+					return (int) args[0] == DKLampsConstants.INVENTORY_ID ? inventory : null;
+				case "getWorld":
+					return world.getWorld();
+				case "hasHintArrow":
+					return world.getHintArrow() != null;
+				case "getHintArrowType":
+					return world.getHintArrow() != null ? HintArrowType.COORDINATE : HintArrowType.NONE;
+				case "getHintArrowPoint":
+					return world.getHintArrow();
+				case "getGameState":
+					return GameState.LOGGED_IN;
+				default:
+					return null;
+			}
+		});
+	}
+
+	static GameObject gameObject(int id, WorldPoint location)
+	{
+		return tileObject(GameObject.class, id, location);
+	}
+
+	static WallObject wallObject(int id, WorldPoint location)
+	{
+		return tileObject(WallObject.class, id, location);
+	}
+
+	private static <T extends TileObject> T tileObject(Class<T> type, int id, WorldPoint location)
+	{
+		return proxy(type, (method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getId":
+					return id;
+				case "getWorldLocation":
+					return location;
+				case "getPlane":
+					return location.getPlane();
+				default:
+					return null;
+			}
+		});
+	}
+
+	static Item[] items(int workingBulbs, int emptyBulbs)
+	{
+		Item[] items = new Item[workingBulbs + emptyBulbs];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new Item(i < workingBulbs ? DKLampsConstants.LIGHT_BULB_WORKING : DKLampsConstants.LIGHT_BULB_EMPTY, 1);
+		}
+		return items;
+	}
+
+	private interface Answer
+	{
+		Object answer(Method method, Object[] args);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, Answer answer)
+	{
+		InvocationHandler handler = (proxy, method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Simulated" + type.getSimpleName();
+			}
+
+			Object value = answer.answer(method, args);
+			return value != null ? value : defaultValue(method.getReturnType());
+		};
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+	}
+
+	private static Object defaultValue(Class<?> type)
+	{
+		if (type == boolean.class)
+		{
+			return Boolean.FALSE;
+		}
+		if (type == int.class)
+		{
+			return 0;
+		}
+		if (type == long.class)
+		{
+			return 0L;
+		}
+		if (type == double.class)
+		{
+			return 0.0;
+		}
+		if (type == float.class)
+		{
+			return 0.0f;
+		}
+		if (type == short.class)
+		{
+			return (short) 0;
+		}
+		if (type == byte.class)
+		{
+			return (byte) 0;
+		}
+		if (type == char.class)
+		{
+			return (char) 0;
+		}
+		return null;
+	}
+}
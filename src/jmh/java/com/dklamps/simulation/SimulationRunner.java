@@ -0,0 +1,69 @@
+package com.dklamps.simulation;
+
+import com.dklamps.DKLampsConstants;
+import com.dklamps.enums.LampSearchMode;
+import com.dklamps.pathfinder.BenchmarkTiles;
+import com.dklamps.pathfinder.CollisionMap;
+import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.pathfinder.SplitFlagMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Runs the simulation for a number of simulated hours and seeds per lamp search mode, starting at
+ * the bank with an empty inventory, and prints lamps per hour and the plugin's time per tick.
+ *
+ * <p>Arguments are {@code key=value}: {@code hours} (default 1), {@code seeds} (default 3) and
+ * {@code mode} (one {@link LampSearchMode}, default all of them).
+ */
+public class SimulationRunner
+{
+	public static void main(String[] args) throws Exception
+	{
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args)
+		{
+			int split = arg.indexOf('=');
+			if (split > 0)
+			{
+				options.put(arg.substring(0, split), arg.substring(split + 1));
+			}
+		}
+		double hours = Double.parseDouble(options.getOrDefault("hours", "1"));
+		int seeds = Integer.parseInt(options.getOrDefault("seeds", "3"));
+		LampSearchMode[] modes = options.containsKey("mode")
+			? new LampSearchMode[]{LampSearchMode.valueOf(options.get("mode"))}
+			: LampSearchMode.values();
+		int ticks = (int) (hours * 3_600_000 / DKLampsConstants.GAME_TICK_MILLIS);
+
+		Pathfinder pathfinder = new Pathfinder();
+		WorldPoint start = BenchmarkTiles.standingTile(new CollisionMap(SplitFlagMap.loadFromResources()),
+			DKLampsConstants.BANK_LOCATION);
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+		System.out.printf("%-10s %5s %10s %12s %12s %12s %9s %10s%n",
+			"mode", "seed", "lamps/hr", "cpu us/tick", "wall us/tick", "max wall ms", "stalled", "retargets");
+		for (LampSearchMode mode : modes)
+		{
+			for (int seed = 1; seed <= seeds; seed++)
+			{
+				DorgeshKaanSimulation simulation = new DorgeshKaanSimulation(pathfinder, pool, mode, start, seed);
+				for (int i = 0; i < ticks; i++)
+				{
+					simulation.tick();
+				}
+
+				System.out.printf("%-10s %5d %10.1f %12.1f %12.1f %12.2f %8.1f%% %10d%n", mode, seed,
+					simulation.getLampsPerHour(),
+					simulation.getPluginCpuNanos() / 1000.0 / ticks,
+					simulation.getPluginWallNanos() / 1000.0 / ticks,
+					simulation.getMaxPluginWallNanos() / 1_000_000.0,
+					simulation.getStalledTicks() * 100.0 / ticks,
+					simulation.getRetargets());
+			}
+		}
+		pool.shutdownNow();
+	}
+}
@@ -4,7 +4,9 @@ import java.awt.Color;
 
 import com.dklamps.enums.DisplayFloorType;
 import com.dklamps.enums.HighlightType;
+import com.dklamps.enums.LampSearchMode;
 import com.dklamps.enums.PathDrawStyle;
+import com.dklamps.enums.RateWindow;
 import com.dklamps.enums.TimerType;
 
 import net.runelite.client.config.Config;
@@ -79,6 +81,39 @@ public interface DKLampsConfig extends Config {
 		return 64;
 	}
 
+	@ConfigItem(
+		keyName = "lampSearchMode",
+		name = "Lamp Search Mode",
+		description = "How broken lamps are compared when looking for the closest one. Parallel spreads the searches over your CPU cores.",
+		section = pathSection,
+		position = 6
+	)
+	default LampSearchMode lampSearchMode() {
+		return LampSearchMode.PARALLEL;
+	}
+
+	@ConfigItem(
+		keyName = "scoutUnknownAreas",
+		name = "Scout Unknown Areas",
+		description = "When no broken lamp is known, draw a path to the area that reveals the most unknown lamps for the distance walked.",
+		section = pathSection,
+		position = 7
+	)
+	default boolean scoutUnknownAreas() {
+		return true;
+	}
+
+	@ConfigItem(
+		keyName = "batchPathRendering",
+		name = "Batch Path Drawing",
+		description = "Draw the path with one call per colour instead of one call per tile.",
+		section = pathSection,
+		position = 8
+	)
+	default boolean batchPathRendering() {
+		return true;
+	}
+
 	// --- Section: Lamp Highlights ---
 	@ConfigSection(
 		name = "Lamp Highlights",
@@ -357,6 +392,39 @@ public interface DKLampsConfig extends Config {
 		return true;
 	}
 
+	@ConfigItem(
+		keyName = "displayRouteInPanel",
+		name = "Display Route (Panel)",
+		description = "Controls visibility of the current route, its floor changes and its target in the side panel map.",
+		section = uiSection,
+		position = 7
+	)
+	default DisplayFloorType displayRouteInPanel() {
+		return DisplayFloorType.ALL_FLOORS;
+	}
+
+	@ConfigItem(
+		keyName = "rateWindow",
+		name = "Recent Rate Window (Stats)",
+		description = "How far back the recent lamps/hr in the Stats Overlay looks.",
+		section = uiSection,
+		position = 8
+	)
+	default RateWindow rateWindow() {
+		return RateWindow.FIFTEEN_MINUTES;
+	}
+
+	@ConfigItem(
+		keyName = "showLegBreakdown",
+		name = "Show Time per Leg (Stats)",
+		description = "Expand the Stats Overlay with the time spent walking to lamps, the bank, the wire machine and scouting.",
+		section = uiSection,
+		position = 9
+	)
+	default boolean showLegBreakdown() {
+		return false;
+	}
+
 	// --- Section: Global Highlight Styles ---
 	@ConfigSection(
 		name = "Global Highlight Styles",
@@ -388,4 +456,34 @@ public interface DKLampsConfig extends Config {
 	default int borderFeather() {
 		return 0;
 	}
+
+	// --- Section: Diagnostics ---
+	@ConfigSection(
+		name = "Diagnostics",
+		description = "Recording sessions for troubleshooting the routing.",
+		position = 50
+	)
+	String diagnosticsSection = "diagnosticsSection";
+
+	@ConfigItem(
+		keyName = "recordJournal",
+		name = "Record Event Journal",
+		description = "Record lamp, object, inventory and location events to a file in the plugin directory so a session can be replayed offline.",
+		section = diagnosticsSection,
+		position = 1
+	)
+	default boolean recordJournal() {
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "showPathfinderMetrics",
+		name = "Pathfinder Metrics",
+		description = "Show pathfinder query times, expansions and outcomes in the stats overlay, and write them to pathfinder-metrics.txt in the plugin directory on logout. Counts cover everything since the plugin started.",
+		section = diagnosticsSection,
+		position = 2
+	)
+	default boolean showPathfinderMetrics() {
+		return false;
+	}
 }
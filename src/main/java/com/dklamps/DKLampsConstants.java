@@ -10,7 +10,17 @@ public final class DKLampsConstants {
 
     public static final int DORGESHKAAN_LAMPS_VARBIT = 4038;
     public static final int WIRE_RESPAWN_TICKS = 8;
+    public static final int GAME_TICK_MILLIS = 600;
     public static final int INVENTORY_ID = 93;
+    public static final int TOTAL_BROKEN_LAMPS = 10;
+    public static final double MIN_STALE_CONFIDENCE = 0.5;
+
+    // Files under the RuneLite directory
+    public static final String PLUGIN_DIRECTORY = "dklamps";
+    public static final String WORLD_CACHE_FILE = "world-lamps.dat";
+    public static final String SESSION_LOG_FILE = "sessions.dat";
+    public static final String JOURNAL_DIRECTORY = "journals";
+    public static final String PATHFINDER_METRICS_FILE = "pathfinder-metrics.txt";
 
     // Icon image path
     public static final String ICON_IMAGE_PATH = "/light_orb_32x32.png";
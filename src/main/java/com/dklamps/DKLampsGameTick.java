@@ -0,0 +1,78 @@
+package com.dklamps;
+
+import com.dklamps.enums.InventoryState;
+import lombok.Getter;
+import net.runelite.api.Client;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+
+/**
+ * The work the plugin does on the managers every game tick. The offline simulation and journal
+ * replay run the same steps through this class, so they cannot drift from the plugin.
+ */
+public class DKLampsGameTick {
+    private final Client client;
+    private final DKLampsStateManager stateManager;
+    private final DKLampsNavigationManager navigationManager;
+    private final DKLampsStatsTracker statsTracker;
+
+    @Getter
+    private int workingBulbs = 0;
+    @Getter
+    private int emptyBulbs = 0;
+
+    public DKLampsGameTick(Client client, DKLampsStateManager stateManager,
+            DKLampsNavigationManager navigationManager, DKLampsStatsTracker statsTracker) {
+        this.client = client;
+        this.stateManager = stateManager;
+        this.navigationManager = navigationManager;
+        this.statsTracker = statsTracker;
+    }
+
+    /**
+     * Counts the bulbs in the inventory in one pass. Call once per tick before {@link #update()},
+     * anything else recording the tick can read the counts afterwards.
+     */
+    public void countBulbs() {
+        workingBulbs = 0;
+        emptyBulbs = 0;
+        ItemContainer inventory = client.getItemContainer(DKLampsConstants.INVENTORY_ID);
+        if (inventory == null) {
+            return;
+        }
+
+        for (Item item : inventory.getItems()) {
+            if (item.getId() == DKLampsConstants.LIGHT_BULB_WORKING) {
+                workingBulbs++;
+            } else if (item.getId() == DKLampsConstants.LIGHT_BULB_EMPTY) {
+                emptyBulbs++;
+            }
+        }
+    }
+
+    /**
+     * @return whether the player is in Dorgesh-Kaan and the route was updated
+     */
+    public boolean update() {
+        stateManager.onGameTick();
+
+        if (stateManager.getCurrentArea() == null) {
+            navigationManager.clearPathAndTarget();
+            client.clearHintArrow();
+            return false;
+        }
+
+        InventoryState inventoryState = InventoryState.of(workingBulbs, emptyBulbs);
+        navigationManager.update(
+                stateManager.getLampState(),
+                stateManager.getTrustedStaleBrokenLamps(),
+                inventoryState,
+                workingBulbs,
+                client.getLocalPlayer().getWorldLocation(),
+                stateManager.getWireMachine());
+        statsTracker.onGameTick(client.getTickCount(), navigationManager.getCurrentTargetType(), inventoryState);
+
+        client.clearHintArrow();
+        return true;
+    }
+}
@@ -2,53 +2,33 @@ package com.dklamps;
 
 import com.dklamps.enums.Area;
 import com.dklamps.enums.Lamp;
-import com.dklamps.enums.LampStatus;
 import com.dklamps.enums.Transport;
+import com.dklamps.pathfinder.WorldPointUtil;
+import com.dklamps.state.LampStateMask;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Sets;
 
-import java.util.Collections;
-import java.util.EnumMap;
+import java.awt.Color;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import net.runelite.api.coords.WorldPoint;
 
 public class DKLampsHelper {
-    private static final Map<Area, Set<Lamp>> LAMPS_BY_AREA;
-    private static final Map<Integer, Set<Lamp>> LAMPS_BY_BIT_POSITION;
     private static final Map<Integer, Lamp> LAMPS_BY_OBJECT_ID;
     private static final Map<WorldPoint, Lamp> LAMPS_BY_WORLD_POINT;
+    // Destination area of every stair and ladder transport, keyed by packed origin tile
+    private static final Map<Integer, Area> STAIR_DESTINATION_BY_ORIGIN;
+    private static final int STAIR_ORIGIN_SEARCH_RADIUS = 2;
 
-    private static final Map<Area, Set<Integer>> BIT_POSITIONS_BY_AREA;
-    private static final Map<Area, Integer> MAX_BIT_BY_AREA;
-    
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_COUNT = Integer.SIZE / CHUNK_BITS;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
 
-    static {
-        ImmutableMap.Builder<Area, Set<Lamp>> areaBuilder = new ImmutableMap.Builder<>();
-        for (Area area : Area.values()) {
-            Set<Lamp> lampsInArea = Sets.immutableEnumSet(
-                    java.util.Arrays.stream(Lamp.values())
-                            .filter(lamp -> lamp.getArea() == area)
-                            .collect(Collectors.toSet()));
-            areaBuilder.put(area, lampsInArea);
-        }
-        LAMPS_BY_AREA = areaBuilder.build();
-
-        ImmutableMap.Builder<Integer, Set<Lamp>> bitBuilder = new ImmutableMap.Builder<>();
-        for (int i = 0; i < 32; i++) {
-            final int bit = i;
-            Set<Lamp> lampsForBit = Sets.immutableEnumSet(
-                    java.util.Arrays.stream(Lamp.values())
-                            .filter(lamp -> lamp.getBitPosition() == bit)
-                            .collect(Collectors.toSet()));
-            if (!lampsForBit.isEmpty()) {
-                bitBuilder.put(i, lampsForBit);
-            }
-        }
-        LAMPS_BY_BIT_POSITION = bitBuilder.build();
+    // Per area and per byte of the varbit value, the broken lamp mask every possible byte value
+    // decodes to. Lamps of the current area win over lamps of the opposite area on the same bit.
+    private static final long[][][] DECODE_TABLES = new long[Area.values().length][CHUNK_COUNT][CHUNK_SIZE];
 
+    static {
         ImmutableMap.Builder<Integer, Lamp> idBuilder = new ImmutableMap.Builder<>();
         ImmutableMap.Builder<WorldPoint, Lamp> wpBuilder = new ImmutableMap.Builder<>();
         for (Lamp lamp : Lamp.values()) {
@@ -58,33 +38,34 @@ public class DKLampsHelper {
         LAMPS_BY_OBJECT_ID = idBuilder.build();
         LAMPS_BY_WORLD_POINT = wpBuilder.build();
 
-        ImmutableMap.Builder<Area, Set<Integer>> bitPosBuilder = new ImmutableMap.Builder<>();
-        ImmutableMap.Builder<Area, Integer> maxBitBuilder = new ImmutableMap.Builder<>();
+        Map<Integer, Area> stairDestinations = new HashMap<>();
+        for (Transport transport : Transport.values()) {
+            Area destinationArea = getArea(transport.getDestination());
+            if (DKLampsConstants.STAIR_IDS.contains(transport.getObjectId()) && destinationArea != null) {
+                stairDestinations.put(WorldPointUtil.packWorldPoint(transport.getOrigin()), destinationArea);
+            }
+        }
+        STAIR_DESTINATION_BY_ORIGIN = ImmutableMap.copyOf(stairDestinations);
+
         for (Area area : Area.values()) {
-            Set<Lamp> lamps = LAMPS_BY_AREA.get(area);
-            if (lamps == null || lamps.isEmpty()) {
-                bitPosBuilder.put(area, Collections.emptySet());
-                maxBitBuilder.put(area, 0);
-                continue;
+            long[] lampMaskByBit = new long[Integer.SIZE];
+            long observed = LampStateMask.observedMask(area);
+            for (Lamp lamp : Lamp.values()) {
+                if ((observed & LampStateMask.bit(lamp)) != 0) {
+                    lampMaskByBit[lamp.getBitPosition()] = LampStateMask.bit(lamp);
+                }
             }
-            
-            Set<Integer> bits = lamps.stream()
-                    .map(Lamp::getBitPosition)
-                    .collect(Collectors.toSet());
-            bitPosBuilder.put(area, bits);
 
-            int maxBit = lamps.stream()
-                    .mapToInt(Lamp::getBitPosition)
-                    .max()
-                    .orElse(0);
-            maxBitBuilder.put(area, maxBit);
+            long[][] tables = DECODE_TABLES[area.ordinal()];
+            for (int chunk = 0; chunk < CHUNK_COUNT; chunk++) {
+                for (int value = 1; value < CHUNK_SIZE; value++) {
+                    // Every value extends a smaller one by its lowest set bit
+                    int lowestBit = Integer.numberOfTrailingZeros(value);
+                    tables[chunk][value] = tables[chunk][value & (value - 1)]
+                            | lampMaskByBit[chunk * CHUNK_BITS + lowestBit];
+                }
+            }
         }
-        BIT_POSITIONS_BY_AREA = bitPosBuilder.build();
-        MAX_BIT_BY_AREA = maxBitBuilder.build();
-    }
-
-    public static Set<Lamp> getLampsByArea(Area area) {
-        return LAMPS_BY_AREA.getOrDefault(area, Collections.emptySet());
     }
 
     public static Area getArea(WorldPoint worldPoint) {
@@ -107,6 +88,37 @@ public class DKLampsHelper {
         return null;
     }
 
+    /**
+     * The area a stair or ladder leads to. Stair transports start on a tile next to the object, so
+     * the closest known origin around it decides; stairs missing from {@link Transport} fall back to
+     * the tile straight above or below.
+     */
+    public static Area getStairDestinationArea(WorldPoint stairLocation, int objectId) {
+        Area closestArea = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (int dx = -STAIR_ORIGIN_SEARCH_RADIUS; dx <= STAIR_ORIGIN_SEARCH_RADIUS; dx++) {
+            for (int dy = -STAIR_ORIGIN_SEARCH_RADIUS; dy <= STAIR_ORIGIN_SEARCH_RADIUS; dy++) {
+                Area area = STAIR_DESTINATION_BY_ORIGIN.get(WorldPointUtil.packWorldPoint(
+                        stairLocation.getX() + dx, stairLocation.getY() + dy, stairLocation.getPlane()));
+                int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                if (area != null && distance < closestDistance) {
+                    closestArea = area;
+                    closestDistance = distance;
+                }
+            }
+        }
+        if (closestArea != null) {
+            return closestArea;
+        }
+
+        if (DKLampsConstants.STAIR_IDS_UP.contains(objectId)) {
+            return getArea(stairLocation.dz(1));
+        } else if (DKLampsConstants.STAIR_IDS_DOWN.contains(objectId)) {
+            return getArea(stairLocation.dz(-1));
+        }
+        return null;
+    }
+
     public static Lamp getLamp(int objectId) {
         return LAMPS_BY_OBJECT_ID.get(objectId);
     }
@@ -119,148 +131,38 @@ public class DKLampsHelper {
         return LAMPS_BY_OBJECT_ID.containsKey(objectId);
     }
 
-    public static Set<Lamp> getBrokenLamps(int varbitValue, Area currentArea) {
-        Set<Lamp> brokenLamps = Sets.newEnumSet(Collections.emptySet(), Lamp.class);
+    public static long getBrokenLamps(int varbitValue, Area currentArea) {
         if (currentArea == null) {
-            return brokenLamps;
-        }
-
-        Area oppositeArea = currentArea.getOpposite();
-        Set<Lamp> lampsInCurrentArea = getLampsByArea(currentArea);
-        Set<Lamp> lampsInOppositeArea = getLampsByArea(oppositeArea);
-
-        int maxBitPosition = MAX_BIT_BY_AREA.getOrDefault(currentArea, 0);
-
-        for (int i = 0; i <= maxBitPosition; i++) {
-            if ((varbitValue & (1 << i)) != 0) {
-                Set<Lamp> lampsForBit = LAMPS_BY_BIT_POSITION.getOrDefault(i, Collections.emptySet());
-
-                Lamp lampToAdd = null;
-                for (Lamp lamp : lampsForBit) {
-                    if (lampsInCurrentArea.contains(lamp)) {
-                        lampToAdd = lamp;
-                        break;
-                    }
-
-                    if (lampsInOppositeArea.contains(lamp)) {
-                        lampToAdd = lamp;
-                    }
-                }
-
-                if (lampToAdd != null) {
-                    brokenLamps.add(lampToAdd);
-                }
-            }
+            return 0L;
         }
 
-        return brokenLamps;
+        long[][] tables = DECODE_TABLES[currentArea.ordinal()];
+        return tables[0][varbitValue & 0xFF]
+                | tables[1][(varbitValue >>> 8) & 0xFF]
+                | tables[2][(varbitValue >>> 16) & 0xFF]
+                | tables[3][varbitValue >>> 24];
     }
 
-    public static Set<Lamp> getValidOppositeLamps(Area currentArea) {
-        Area oppositeArea = currentArea.getOpposite();
-        if (oppositeArea == null) {
-            return Collections.emptySet();
-        }
-
-        Set<Lamp> lampsInOppositeArea = getLampsByArea(oppositeArea);
-
-        int maxBitPosition = MAX_BIT_BY_AREA.getOrDefault(currentArea, 0);
-        Set<Integer> currentAreaBitPositions = BIT_POSITIONS_BY_AREA.getOrDefault(currentArea, Collections.emptySet());
-
-        return lampsInOppositeArea.stream()
-                .filter(lamp -> lamp.getBitPosition() <= maxBitPosition
-                            && !currentAreaBitPositions.contains(lamp.getBitPosition()))
-                .collect(Collectors.toSet());
+    /**
+     * Fades a status colour by how much a stale observation can still be trusted.
+     */
+    public static Color staleColor(Color color, double confidence) {
+        return new Color(color.getRed(), color.getGreen(), color.getBlue(), staleAlpha(color, confidence));
     }
 
-    public static Map<Lamp, LampStatus> updateLampStatuses(
-            Map<Lamp, LampStatus> lampStatuses,
-            Set<Lamp> brokenLamps,
-            boolean isLampsFixed,
-            Area currentArea) {
-
-        Map<Lamp, LampStatus> updatedStatuses = new EnumMap<>(lampStatuses);
-
-        Set<Lamp> lampsInCurrentArea = getLampsByArea(currentArea);
-        for (Lamp lamp : lampsInCurrentArea) {
-            updatedStatuses.put(lamp, brokenLamps.contains(lamp) ? LampStatus.BROKEN : LampStatus.WORKING);
-        }
-
-        Area oppositeArea = currentArea.getOpposite();
-        if (oppositeArea != null) {
-            Set<Lamp> validOppositeLamps = getValidOppositeLamps(currentArea);
-            for (Lamp lamp : validOppositeLamps) {
-                updatedStatuses.put(lamp, brokenLamps.contains(lamp) ? LampStatus.BROKEN : LampStatus.WORKING);
-            }
-            
-            if (isLampsFixed) {
-                for (Lamp lamp : Lamp.values()) {
-                    Area lampArea = lamp.getArea();
-                    if (lampArea != currentArea && lampArea != oppositeArea) {
-                        LampStatus status = updatedStatuses.get(lamp);
-                        if (status == LampStatus.WORKING) {
-                            updatedStatuses.put(lamp, LampStatus.UNKNOWN);
-                        }
-                    }
-                }
-            }
-        }
-        autoFixAllLampsIfNeeded(updatedStatuses);
-        
-        return updatedStatuses;
+    public static int staleAlpha(Color color, double confidence) {
+        return (int) Math.round(color.getAlpha() * Math.max(0.0, Math.min(1.0, confidence)));
     }
 
-    public static int countBrokenLamps(Map<Lamp, LampStatus> lampStatuses) {
-        int totalBroken = 0;
-        for (LampStatus status : lampStatuses.values()) {
-            if (status == LampStatus.BROKEN) {
-                totalBroken++;
-            }
+    public static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        if (seconds < 60) {
+            return seconds + "s";
         }
-        return totalBroken;
-    }
-
-    public static void autoFixAllLampsIfNeeded(Map<Lamp, LampStatus> lampStatuses) {
-        int totalBroken = countBrokenLamps(lampStatuses);
-
-        if (totalBroken == 10) {
-            for (Lamp lamp : Lamp.values()) {
-                if (lampStatuses.get(lamp) != LampStatus.BROKEN) {
-                    lampStatuses.put(lamp, LampStatus.WORKING);
-                }
-            }
-        }
-    }
-
-    public static boolean areaHasUnknownLamps(Area area, Map<Lamp, LampStatus> lampStatuses) {
-        if (area == null) {
-            return false;
-        }
-
-        Set<Lamp> lampsInArea = getLampsByArea(area);
-        for (Lamp lamp : lampsInArea) {
-            LampStatus status = lampStatuses.getOrDefault(lamp, LampStatus.UNKNOWN);
-            if (status == LampStatus.UNKNOWN) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    public static int countUnknownLampsInArea(Map<Lamp, LampStatus> lampStatuses, Area area) {
-        if (area == null) {
-            return 0;
-        }
-        
-        int unknownCount = 0;
-        Set<Lamp> lampsInArea = getLampsByArea(area);
-        
-        for (Lamp lamp : lampsInArea) {
-            if (lampStatuses.getOrDefault(lamp, LampStatus.UNKNOWN) == LampStatus.UNKNOWN) {
-                unknownCount++;
-            }
+        if (seconds < 3600) {
+            return String.format("%d:%02d", seconds / 60, seconds % 60);
         }
-        return unknownCount;
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
     }
 
     public static boolean isInBankArea(WorldPoint playerLocation) {
@@ -2,20 +2,28 @@ package com.dklamps;
 
 import com.dklamps.enums.InventoryState;
 import com.dklamps.enums.Lamp;
-import com.dklamps.enums.LampStatus;
 import com.dklamps.enums.TargetType;
+import com.dklamps.navigation.ClosestLampSearch;
+import com.dklamps.navigation.NavigationScheduler;
+import com.dklamps.navigation.NavigationSnapshot;
+import com.dklamps.navigation.PathRequest;
+import com.dklamps.navigation.RouteAnnotation;
+import com.dklamps.navigation.ScoutingPlanner;
 import com.dklamps.pathfinder.Pathfinder;
-import java.util.ArrayList;
-import java.util.HashSet;
+import com.dklamps.state.LampStateMask;
+import com.dklamps.state.SceneObjectIndex;
+import com.dklamps.stats.BreakModel;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
 import net.runelite.api.GameObject;
+import net.runelite.api.WallObject;
 import net.runelite.api.coords.WorldPoint;
 
 @Slf4j
@@ -25,57 +33,98 @@ public class DKLampsNavigationManager {
     private final DKLampsConfig config;
     private final Pathfinder pathfinder;
     private final ExecutorService pathfindingExecutor;
+    private final NavigationScheduler scheduler;
+    private final ClosestLampSearch lampSearch;
+    private final ScoutingPlanner scoutingPlanner;
 
-    @Getter
-    private List<WorldPoint> shortestPath = new ArrayList<>();
-    @Getter
-    private int closestDistance = 0;
     @Getter
     private TargetType currentTargetType = TargetType.NONE;
-    
+
+    // Client thread only: searches run ahead of what is published, speculatively or not
     private Lamp lastLoggedClosestLamp = null;
-    private CompletableFuture<Void> currentClosestLampTask;
-    private long lastClosestLampCalculation = 0;
-    private static final long CLOSEST_LAMP_COOLDOWN_MS = 600;
-    
-    private final Set<Lamp> brokenLamps = new HashSet<>();
+    private PathRequest lastSubmittedRequest = null;
+    private volatile Speculation speculation = null;
+    private RouteAnnotation routeAnnotation = RouteAnnotation.EMPTY;
+
+    private static final class Speculation {
+        private final PathRequest request;
+        private volatile NavigationSnapshot result;
+
+        private Speculation(PathRequest request) {
+            this.request = request;
+        }
+    }
+
+    public DKLampsNavigationManager(Client client, DKLampsConfig config, Pathfinder pathfinder,
+            ExecutorService pathfindingExecutor, ForkJoinPool lampSearchPool) {
+        this(client, config, pathfinder, pathfindingExecutor, lampSearchPool, new BreakModel());
+    }
 
-    public DKLampsNavigationManager(Client client, DKLampsConfig config, Pathfinder pathfinder, ExecutorService pathfindingExecutor) {
+    public DKLampsNavigationManager(Client client, DKLampsConfig config, Pathfinder pathfinder,
+            ExecutorService pathfindingExecutor, ForkJoinPool lampSearchPool, BreakModel breakModel) {
         this.client = client;
         this.config = config;
         this.pathfinder = pathfinder;
         this.pathfindingExecutor = pathfindingExecutor;
+        this.lampSearch = new ClosestLampSearch(pathfinder, lampSearchPool);
+        this.scoutingPlanner = new ScoutingPlanner(pathfinder, breakModel);
+        this.scheduler = pathfindingExecutor != null ? new NavigationScheduler(pathfindingExecutor, this::search) : null;
     }
 
-    public void update(Map<Lamp, LampStatus> lampStatuses, 
-                         InventoryState inventoryState, 
-                         WorldPoint playerLocation, 
+    public NavigationSnapshot getSnapshot() {
+        return scheduler != null ? scheduler.getSnapshot() : NavigationSnapshot.EMPTY;
+    }
+
+    public List<WorldPoint> getShortestPath() {
+        return getSnapshot().getPath();
+    }
+
+    /**
+     * Doors and stairs along the current path, rebuilt on the client thread only when the path or
+     * the spawned objects changed.
+     */
+    public RouteAnnotation getRouteAnnotation(SceneObjectIndex<WallObject> doors, SceneObjectIndex<GameObject> stairs) {
+        NavigationSnapshot snapshot = getSnapshot();
+        if (!routeAnnotation.isCurrent(snapshot, doors, stairs)) {
+            routeAnnotation = RouteAnnotation.annotate(snapshot, doors, stairs);
+        }
+        return routeAnnotation;
+    }
+
+    public int getClosestDistance() {
+        return getSnapshot().getDistance();
+    }
+
+    public void update(LampStateMask lampState,
+                         long staleBrokenLamps,
+                         InventoryState inventoryState,
+                         int workingBulbs,
+                         WorldPoint playerLocation,
                          GameObject wireMachine) {
 
         if (!config.showPathToLocation()) {
-            if (!shortestPath.isEmpty()) {
-                shortestPath.clear();
-            }
-            if (currentTargetType != TargetType.NONE) {
-                 currentTargetType = TargetType.NONE;
-                 closestDistance = 0;
-            }
-            if (currentClosestLampTask != null && !currentClosestLampTask.isDone()) {
-                currentClosestLampTask.cancel(true);
-            }
+            currentTargetType = TargetType.NONE;
+            clearRequests();
             return;
         }
 
-        if (playerLocation == null || pathfinder == null || pathfindingExecutor == null) {
+        if (playerLocation == null || pathfinder == null || scheduler == null) {
             return;
         }
 
-        WorldPoint targetLocation = null;
+        logPublishedTarget();
+
+        WorldPoint targetLocation;
+        long candidateLamps = 0L;
 
         switch (inventoryState) {
             case NO_LIGHT_BULBS:
                 targetLocation = DKLampsConstants.BANK_LOCATION;
                 currentTargetType = TargetType.BANK;
+                if (DKLampsHelper.isInBankArea(playerLocation)) {
+                    clearRequests();
+                    return;
+                }
                 break;
 
             case ONLY_EMPTY_BULBS:
@@ -84,210 +133,245 @@ public class DKLampsNavigationManager {
                 break;
 
             case HAS_WORKING_BULBS:
+                targetLocation = null;
                 currentTargetType = TargetType.LAMP;
-                findClosestBrokenLamp(lampStatuses, playerLocation);
-                return;
+                candidateLamps = lampState.getBroken();
+                if (candidateLamps == 0) {
+                    candidateLamps = staleBrokenLamps;
+                }
+                if (candidateLamps == 0) {
+                    if (lastLoggedClosestLamp != null) {
+                        log.info("No broken lamps found");
+                        lastLoggedClosestLamp = null;
+                    }
+                    if (!config.scoutUnknownAreas() || lampState.getUnknown() == 0) {
+                        currentTargetType = TargetType.NONE;
+                        clearRequests();
+                        return;
+                    }
+                    currentTargetType = TargetType.SCOUT;
+                    candidateLamps = lampState.getUnknown();
+                }
+                break;
+
             default:
                 currentTargetType = TargetType.NONE;
-                shortestPath.clear();
+                clearRequests();
                 return;
         }
 
-        if (targetLocation != null) {
-            calculatePathToTarget(targetLocation, currentTargetType, playerLocation);
+        PathRequest request = new PathRequest(client.getTickCount(), currentTargetType, playerLocation,
+                targetLocation, candidateLamps);
+        if (request.hasSameInputs(lastSubmittedRequest)) {
+            speculateNextTarget(request, workingBulbs);
+            return;
+        }
+
+        lastSubmittedRequest = request;
+        boolean speculated = swapInSpeculation(request);
+        pathfinder.getMetrics().recordRouteCacheLookup(speculated);
+        if (!speculated) {
+            scheduler.submit(request);
         }
+        speculateNextTarget(request, workingBulbs);
     }
 
     public void shutDown() {
-        if (currentClosestLampTask != null) {
-            currentClosestLampTask.cancel(true);
-        }
+        clearRequests();
     }
 
     public void clearPathAndTarget() {
-        shortestPath.clear();
-        closestDistance = 0;
         currentTargetType = TargetType.NONE;
-        if (currentClosestLampTask != null && !currentClosestLampTask.isDone()) {
-            currentClosestLampTask.cancel(true);
+        clearRequests();
+    }
+
+    private void clearRequests() {
+        lastSubmittedRequest = null;
+        speculation = null;
+        if (scheduler != null) {
+            scheduler.clear();
         }
     }
 
-    private void findClosestBrokenLamp(Map<Lamp, LampStatus> lampStatuses, WorldPoint playerLocation) {
-        brokenLamps.clear();
-        for (Map.Entry<Lamp, LampStatus> entry : lampStatuses.entrySet()) {
-            if (entry.getValue() == LampStatus.BROKEN) {
-                brokenLamps.add(entry.getKey());
-            }
+    /**
+     * Once the player stands next to the lamp being routed to, the route that will be needed after
+     * fixing it is already known: the remaining broken lamps, or the wire machine when this was the
+     * last working bulb. It is computed while the player is busy fixing the lamp.
+     */
+    private void speculateNextTarget(PathRequest current, int workingBulbs) {
+        NavigationSnapshot snapshot = getSnapshot();
+        Lamp targetLamp = snapshot.getTargetLamp();
+        if (current.getTargetType() != TargetType.LAMP || targetLamp == null || snapshot.isEmpty()
+                || !isAtInteractionTile(current.getPlayerLocation(), targetLamp, snapshot.getPath())) {
+            return;
         }
-        final Set<Lamp> allBrokenLamps = brokenLamps;
 
-        if (allBrokenLamps.isEmpty()) {
-            if (lastLoggedClosestLamp != null) {
-                log.info("No broken lamps found");
-                lastLoggedClosestLamp = null;
+        PathRequest predicted;
+        if (workingBulbs <= 1) {
+            predicted = new PathRequest(current.getTick(), TargetType.WIRING_MACHINE, current.getPlayerLocation(),
+                    DKLampsConstants.WIRE_MACHINE_LOCATION, 0L);
+        } else {
+            long remaining = current.getCandidateLamps() & ~LampStateMask.bit(targetLamp);
+            if (remaining == 0) {
+                return;
             }
-            shortestPath.clear();
-            return;
+            predicted = new PathRequest(current.getTick(), TargetType.LAMP, current.getPlayerLocation(), null, remaining);
         }
 
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastClosestLampCalculation < CLOSEST_LAMP_COOLDOWN_MS) {
+        Speculation existing = speculation;
+        if (existing != null && existing.request.hasSameInputs(predicted)) {
             return;
         }
-        lastClosestLampCalculation = currentTime;
 
-        if (currentClosestLampTask != null && !currentClosestLampTask.isDone()) {
-            currentClosestLampTask.cancel(true);
+        final Speculation next = new Speculation(predicted);
+        speculation = next;
+        try {
+            pathfindingExecutor.execute(() -> {
+                if (speculation == next) {
+                    next.result = search(predicted, () -> speculation != next);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            speculation = null;
         }
+    }
 
-        final WorldPoint playerPos = playerLocation;
-        final Set<Lamp> lampsToCheck = allBrokenLamps;
-
-        currentClosestLampTask = CompletableFuture.runAsync(() -> {
-            try {
-                Lamp closestLamp = null;
-                List<WorldPoint> bestPath = null;
-                int shortestPathLength = Integer.MAX_VALUE;
+    private void logPublishedTarget() {
+        NavigationSnapshot snapshot = getSnapshot();
+        Lamp lamp = snapshot.getTargetLamp();
+        if (lamp == null || lamp == lastLoggedClosestLamp) {
+            return;
+        }
 
-                for (Lamp lamp : lampsToCheck) {
-                    if (Thread.currentThread().isInterrupted()) {
-                        return;
-                    }
+        lastLoggedClosestLamp = lamp;
+        if (snapshot.getDistance() == Integer.MAX_VALUE) {
+            log.info("All pathfinding failed, using direct path fallback to {}", lamp.name());
+        } else {
+            log.debug("Closest broken lamp is {} at {} tiles", lamp.name(), snapshot.getDistance());
+        }
+    }
 
-                    try {
-                        List<WorldPoint> path = pathfinder.findPath(playerPos, lamp.getWorldPoint());
-
-                        if (path != null && !path.isEmpty() && path.size() < shortestPathLength) {
-                            closestLamp = lamp;
-                            bestPath = new ArrayList<>(path);
-                            shortestPathLength = path.size();
-                        }
-                    } catch (Exception e) {
-                        log.debug("Failed to find path to lamp {}: {}", lamp.name(), e.getMessage());
-                        int fallbackDistance = lamp.getWorldPoint().distanceTo(playerPos);
-                        if (lamp.getWorldPoint().getPlane() != playerPos.getPlane()) {
-                            fallbackDistance += 32;
-                        }
-                        if (fallbackDistance < shortestPathLength) {
-                            closestLamp = lamp;
-                            bestPath = new ArrayList<>();
-                            bestPath.add(playerPos);
-                            bestPath.add(lamp.getWorldPoint());
-                            shortestPathLength = fallbackDistance;
-                            log.info("Using fallback path to {} with distance {}", lamp.name(), fallbackDistance);
-                        }
-                    }
-                }
+    private boolean swapInSpeculation(PathRequest request) {
+        Speculation current = speculation;
+        if (current == null) {
+            return false;
+        }
 
-                final Lamp finalClosestLamp = closestLamp;
-                final List<WorldPoint> finalPath = bestPath;
-                final int finalDistance = shortestPathLength;
-
-                closestDistance = finalDistance;
-
-                if (finalClosestLamp == null && !lampsToCheck.isEmpty()) {
-                    Lamp fallbackLamp = lampsToCheck.stream()
-                            .min((l1, l2) -> {
-                                int dist1 = l1.getWorldPoint().distanceTo(playerPos);
-                                int dist2 = l2.getWorldPoint().distanceTo(playerPos);
-                                if (l1.getWorldPoint().getPlane() != playerPos.getPlane())
-                                    dist1 += 32;
-                                if (l2.getWorldPoint().getPlane() != playerPos.getPlane())
-                                    dist2 += 32;
-                                return Integer.compare(dist1, dist2);
-                            })
-                            .orElse(null);
-
-                    if (fallbackLamp != null) {
-                        List<WorldPoint> fallbackPath = new ArrayList<>();
-                        fallbackPath.add(playerPos);
-                        fallbackPath.add(fallbackLamp.getWorldPoint());
-                        log.info("All pathfinding failed, using direct path fallback to {}", fallbackLamp.name());
-
-                        final Lamp finalFallbackLamp = fallbackLamp;
-                        final List<WorldPoint> finalFallbackPath = fallbackPath;
-
-                        if (!Thread.currentThread().isInterrupted()) {
-                            shortestPath = finalFallbackPath;
-
-                            if (!finalFallbackLamp.equals(lastLoggedClosestLamp)) {
-                                lastLoggedClosestLamp = finalFallbackLamp;
-                            }
-                        }
-                        return;
-                    }
-                }
+        NavigationSnapshot result = current.result;
+        PathRequest predicted = current.request;
+        if (result == null || predicted.getTargetType() != request.getTargetType()
+                || !predicted.getPlayerLocation().equals(request.getPlayerLocation())) {
+            return false;
+        }
 
-                if (!Thread.currentThread().isInterrupted() && finalClosestLamp != null) {
-                    shortestPath = finalPath != null ? finalPath : new ArrayList<>();
-                    if (!finalClosestLamp.equals(lastLoggedClosestLamp)) {
-                        lastLoggedClosestLamp = finalClosestLamp;
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error during closest lamp calculation", e);
+        if (request.getTargetType() == TargetType.LAMP) {
+            long predictedLamps = predicted.getCandidateLamps();
+            if ((request.getCandidateLamps() & predictedLamps) != predictedLamps) {
+                return false;
             }
-        }, pathfindingExecutor).exceptionally(throwable -> {
-            if (!(throwable instanceof java.util.concurrent.CancellationException)) {
-                log.error("Closest lamp calculation failed", throwable);
+            // A lamp that broke while fixing the last one can only replace the speculative target
+            // if it could possibly be closer.
+            for (long added = request.getCandidateLamps() & ~predictedLamps; added != 0; added &= added - 1) {
+                Lamp lamp = LampStateMask.lamp(Long.numberOfTrailingZeros(added));
+                if (pathfinder.estimateMinimumPathSize(request.getPlayerLocation(), lamp.getWorldPoint()) < result.getDistance()) {
+                    return false;
+                }
             }
-            return null;
-        });
+        } else if (!predicted.getTargetLocation().equals(request.getTargetLocation())) {
+            return false;
+        }
+
+        speculation = null;
+        scheduler.publish(new NavigationSnapshot(0, request.getTick(), result.getTargetType(), result.getTargetLamp(),
+                result.getPath(), result.getDistance(), result.getTransports()));
+        log.debug("Swapped in precomputed route to {}", result.getTargetType());
+        return true;
     }
 
-    private void calculatePathToTarget(WorldPoint targetLocation, TargetType targetType, WorldPoint playerLocation) {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastClosestLampCalculation < CLOSEST_LAMP_COOLDOWN_MS) {
-            return;
+    private static boolean isAtInteractionTile(WorldPoint playerLocation, Lamp lamp, List<WorldPoint> path) {
+        if (playerLocation.equals(path.get(path.size() - 1))) {
+            return true;
         }
-        lastClosestLampCalculation = currentTime;
+        WorldPoint lampLocation = lamp.getWorldPoint();
+        return lampLocation.getPlane() == playerLocation.getPlane() && lampLocation.distanceTo2D(playerLocation) <= 1;
+    }
 
-        if (currentClosestLampTask != null && !currentClosestLampTask.isDone()) {
-            currentClosestLampTask.cancel(true);
+    private NavigationSnapshot search(PathRequest request, BooleanSupplier aborted) {
+        NavigationSnapshot result;
+        if (request.getTargetType() == TargetType.LAMP) {
+            result = findClosestBrokenLamp(request, aborted);
+        } else if (request.getTargetType() == TargetType.SCOUT) {
+            result = planScoutingRoute(request, aborted);
+        } else {
+            result = calculatePathToTarget(request, aborted);
         }
 
-        final WorldPoint playerPos = playerLocation;
-        final WorldPoint target = targetLocation;
+        if (result == null || result.isEmpty()) {
+            return result;
+        }
+        return result.withTransports(pathfinder.getTransportsOnPath(result.getPath()));
+    }
 
-        if (DKLampsHelper.isInBankArea(playerLocation) && targetType == TargetType.BANK) {
-            shortestPath.clear();
-            return;
+    private NavigationSnapshot planScoutingRoute(PathRequest request, BooleanSupplier aborted) {
+        ScoutingPlanner.Plan plan = scoutingPlanner.plan(request.getPlayerLocation(), request.getCandidateLamps(), aborted);
+        if (plan == null) {
+            return aborted.getAsBoolean() ? null : NavigationSnapshot.EMPTY;
         }
+        return new NavigationSnapshot(0, request.getTick(), TargetType.SCOUT, null, plan.getPath(), plan.getPath().size());
+    }
 
-        currentClosestLampTask = CompletableFuture.runAsync(() -> {
-            try {
-                if (Thread.currentThread().isInterrupted()) {
-                    return;
-                }
+    private NavigationSnapshot findClosestBrokenLamp(PathRequest request, BooleanSupplier aborted) {
+        final WorldPoint playerPos = request.getPlayerLocation();
+        final long candidates = request.getCandidateLamps();
 
-                List<WorldPoint> path = pathfinder.findPath(playerPos, target);
-
-                if (!Thread.currentThread().isInterrupted()) {
-                    if (path != null && !path.isEmpty()) {
-                        shortestPath = new ArrayList<>(path);
-                        closestDistance = path.size();
-                    } else {
-                        shortestPath = new ArrayList<>();
-                        shortestPath.add(playerPos);
-                        shortestPath.add(target);
-                        closestDistance = target.distanceTo(playerPos);
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error calculating path to {}: {}", targetType, e.getMessage());
-                if (!Thread.currentThread().isInterrupted()) {
-                    shortestPath = new ArrayList<>();
-                    shortestPath.add(playerPos);
-                    shortestPath.add(target);
-                    closestDistance = target.distanceTo(playerPos);
+        ClosestLampSearch.Result closest = lampSearch.find(playerPos, candidates, config.lampSearchMode(), aborted);
+        if (aborted.getAsBoolean()) {
+            return null;
+        }
+
+        if (closest == null) {
+            Lamp fallbackLamp = null;
+            int fallbackDistance = Integer.MAX_VALUE;
+            for (long remaining = candidates; remaining != 0; remaining &= remaining - 1) {
+                Lamp lamp = LampStateMask.lamp(Long.numberOfTrailingZeros(remaining));
+                int distance = ClosestLampSearch.fallbackDistance(lamp, playerPos);
+                if (distance < fallbackDistance) {
+                    fallbackLamp = lamp;
+                    fallbackDistance = distance;
                 }
             }
-        }, pathfindingExecutor).exceptionally(throwable -> {
-            if (!(throwable instanceof java.util.concurrent.CancellationException)) {
-                log.error("Path calculation to {} failed", targetType, throwable);
+
+            if (fallbackLamp == null) {
+                return null;
             }
-            return null;
-        });
+
+            return new NavigationSnapshot(0, request.getTick(), TargetType.LAMP, fallbackLamp,
+                    ClosestLampSearch.directPath(playerPos, fallbackLamp.getWorldPoint()), Integer.MAX_VALUE);
+        }
+
+        return new NavigationSnapshot(0, request.getTick(), TargetType.LAMP, closest.getLamp(),
+                closest.getPath(), closest.getDistance());
+    }
+
+    private NavigationSnapshot calculatePathToTarget(PathRequest request, BooleanSupplier aborted) {
+        final WorldPoint playerPos = request.getPlayerLocation();
+        final WorldPoint target = request.getTargetLocation();
+
+        try {
+            List<WorldPoint> path = pathfinder.findPath(playerPos, target, aborted);
+            if (aborted.getAsBoolean()) {
+                return null;
+            }
+
+            if (path != null && !path.isEmpty()) {
+                return new NavigationSnapshot(0, request.getTick(), request.getTargetType(), null,
+                        Collections.unmodifiableList(path), path.size());
+            }
+        } catch (Exception e) {
+            log.error("Error calculating path to {}: {}", request.getTargetType(), e.getMessage());
+        }
+
+        return new NavigationSnapshot(0, request.getTick(), request.getTargetType(), null,
+                ClosestLampSearch.directPath(playerPos, target), target.distanceTo(playerPos));
     }
 }
@@ -1,30 +1,41 @@
 package com.dklamps;
 
-import com.dklamps.enums.InventoryState;
+import com.dklamps.journal.EventJournal;
 import com.dklamps.overlay.DKLampsOverlay;
 import com.dklamps.overlay.StatsOverlay;
 import com.dklamps.overlay.TeleportOverlay;
 import com.dklamps.panel.DKLampsPanel;
 import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.state.SceneObjectIndex;
+import com.dklamps.state.WorldLampCache;
+import com.dklamps.stats.SessionLog;
 import com.google.inject.Provides;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import javax.inject.Inject;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
-import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.GameObject;
+import net.runelite.api.GameState;
+import net.runelite.api.HintArrowType;
+import net.runelite.api.WallObject;
 import net.runelite.api.events.GameObjectDespawned;
 import net.runelite.api.events.GameObjectSpawned;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.VarbitChanged;
 import net.runelite.api.events.WallObjectDespawned;
 import net.runelite.api.events.WallObjectSpawned;
+import net.runelite.client.RuneLite;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.plugins.Plugin;
@@ -69,8 +80,16 @@ public class DKLampsPlugin extends Plugin {
     private DKLampsStatsTracker statsTracker;
     @Getter
     private DKLampsStateManager stateManager;
+    private DKLampsGameTick tick;
+
+    private static final int MAX_LAMP_SEARCH_THREADS = 4;
 
     private ExecutorService pathfindingExecutor;
+    // Appends to the session log and the event journal
+    private ExecutorService fileWriterExecutor;
+    private ForkJoinPool lampSearchPool;
+    private File pluginDirectory;
+    private EventJournal journal;
 
     @Getter
     private Pathfinder pathfinder;
@@ -84,8 +103,19 @@ public class DKLampsPlugin extends Plugin {
         overlayManager.add(teleportOverlay);
         overlayManager.add(statsOverlay);
 
-        statsTracker = new DKLampsStatsTracker();
-        stateManager = new DKLampsStateManager(client, statsTracker);
+        pluginDirectory = new File(RuneLite.RUNELITE_DIR, DKLampsConstants.PLUGIN_DIRECTORY);
+        fileWriterExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "DKLamps-FileWriter");
+            t.setDaemon(true);
+            return t;
+        });
+        statsTracker = new DKLampsStatsTracker(
+                new SessionLog(new File(pluginDirectory, DKLampsConstants.SESSION_LOG_FILE), fileWriterExecutor));
+        statsTracker.loadHistory();
+        WorldLampCache worldCache = new WorldLampCache(new File(pluginDirectory, DKLampsConstants.WORLD_CACHE_FILE),
+                fileWriterExecutor);
+        worldCache.load(System.currentTimeMillis());
+        stateManager = new DKLampsStateManager(client, statsTracker, worldCache);
 
         pathfindingExecutor = Executors.newSingleThreadExecutor(r -> {
             Thread t = new Thread(r, "DKLamps-Pathfinder");
@@ -93,6 +123,14 @@ public class DKLampsPlugin extends Plugin {
             return t;
         });
 
+        int lampSearchThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_LAMP_SEARCH_THREADS));
+        lampSearchPool = new ForkJoinPool(lampSearchThreads, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("DKLamps-LampSearch-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+
         try {
             pathfinder = new Pathfinder();
         } catch (IOException e) {
@@ -100,7 +138,9 @@ public class DKLampsPlugin extends Plugin {
             return;
         }
 
-        navigationManager = new DKLampsNavigationManager(client, config, pathfinder, pathfindingExecutor);
+        navigationManager = new DKLampsNavigationManager(client, config, pathfinder, pathfindingExecutor, lampSearchPool,
+                statsTracker.getBreakModel());
+        tick = new DKLampsGameTick(client, stateManager, navigationManager, statsTracker);
 
         panel = new DKLampsPanel(this);
         final BufferedImage icon = ImageUtil.loadImageResource(getClass(), DKLampsConstants.ICON_IMAGE_PATH);
@@ -132,35 +172,77 @@ public class DKLampsPlugin extends Plugin {
         if (pathfindingExecutor != null) {
             pathfindingExecutor.shutdown();
         }
+        if (statsTracker != null) {
+            statsTracker.endSession();
+        }
+        stopJournal();
+        dumpPathfinderMetrics();
+        if (fileWriterExecutor != null) {
+            // Lets the queued session log, lamp cache and journal writes finish
+            fileWriterExecutor.shutdown();
+        }
+        if (lampSearchPool != null) {
+            lampSearchPool.shutdownNow();
+        }
     }
 
     @Subscribe
     public void onGameObjectSpawned(GameObjectSpawned event) {
+        if (journal != null && EventJournal.isRecorded(event.getGameObject().getId())) {
+            journal.recordGameObject(true, event.getGameObject().getId(), event.getGameObject().getWorldLocation());
+        }
         stateManager.onGameObjectSpawned(event.getGameObject());
     }
 
     @Subscribe
     public void onGameObjectDespawned(GameObjectDespawned event) {
+        if (journal != null && EventJournal.isRecorded(event.getGameObject().getId())) {
+            journal.recordGameObject(false, event.getGameObject().getId(), event.getGameObject().getWorldLocation());
+        }
         stateManager.onGameObjectDespawned(event.getGameObject());
     }
 
     @Subscribe
     public void onWallObjectSpawned(WallObjectSpawned event) {
+        if (journal != null && EventJournal.isRecorded(event.getWallObject().getId())) {
+            journal.recordWallObject(true, event.getWallObject().getId(), event.getWallObject().getWorldLocation());
+        }
         stateManager.onWallObjectSpawned(event.getWallObject());
     }
 
     @Subscribe
     public void onWallObjectDespawned(WallObjectDespawned event) {
+        if (journal != null && EventJournal.isRecorded(event.getWallObject().getId())) {
+            journal.recordWallObject(false, event.getWallObject().getId(), event.getWallObject().getWorldLocation());
+        }
         stateManager.onWallObjectDespawned(event.getWallObject());
     }
 
     @Subscribe
     public void onGameStateChanged(GameStateChanged gameStateChanged) {
+        if (journal != null) {
+            journal.recordGameState(gameStateChanged.getGameState(), client.getWorld());
+        }
         stateManager.onGameStateChanged(gameStateChanged.getGameState());
+        if (gameStateChanged.getGameState() == GameState.LOGIN_SCREEN) {
+            statsTracker.endSession();
+            dumpPathfinderMetrics();
+        }
+    }
+
+    @Subscribe
+    public void onVarbitChanged(VarbitChanged varbitChanged) {
+        if (journal != null && varbitChanged.getVarbitId() == DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT) {
+            journal.recordVarbit(varbitChanged.getValue());
+        }
+        stateManager.onVarbitChanged(varbitChanged);
     }
 
     @Subscribe
     public void onChatMessage(ChatMessage chatMessage) {
+        if (journal != null && EventJournal.isRecorded(chatMessage.getType())) {
+            journal.recordChatMessage(chatMessage.getType(), chatMessage.getMessage());
+        }
         stateManager.onChatMessage(chatMessage);
         statsTracker.onChatMessage(chatMessage);
     }
@@ -169,35 +251,79 @@ public class DKLampsPlugin extends Plugin {
     public void onGameTick(GameTick gameTick) {
         lastTickInstant = Instant.now();
         
-        if (client.getLocalPlayer() == null) {
+        if (client.getLocalPlayer() == null || tick == null) {
             return;
         }
 
-        stateManager.onGameTick();
+        tick.countBulbs();
+        updateJournal();
+        if (journal != null) {
+            journal.recordTick(client.getTickCount(), client.getLocalPlayer().getWorldLocation(),
+                    tick.getWorkingBulbs(), tick.getEmptyBulbs(),
+                    client.hasHintArrow() && client.getHintArrowType() == HintArrowType.COORDINATE
+                            ? client.getHintArrowPoint() : null);
+        }
 
-        if (stateManager.getCurrentArea() == null) { 
-            // Add a simple clear method to the nav manager
-            if (navigationManager != null) {
-                navigationManager.clearPathAndTarget();
-            }
-            client.clearHintArrow();
+        if (tick.update() && panel.isVisible()) {
+            panel.update();
+        }
+    }
+
+    private void updateJournal() {
+        if (config.recordJournal() == (journal != null)) {
+            return;
+        }
+        if (journal != null) {
+            stopJournal();
             return;
         }
 
-        InventoryState inventoryState = InventoryState.NO_LIGHT_BULBS.getInventoryState(client);
-        WorldPoint playerLocation = client.getLocalPlayer().getWorldLocation();
+        File file = new File(new File(pluginDirectory, DKLampsConstants.JOURNAL_DIRECTORY),
+                "journal-" + System.currentTimeMillis() + ".dkj");
+        journal = new EventJournal(file, fileWriterExecutor);
+        log.info("Recording event journal to {}", file);
 
-        navigationManager.update(
-                stateManager.getLampStatuses(),
-                inventoryState,
-                playerLocation,
-                stateManager.getWireMachine());
+        // Replay starts from nothing, so record what is already loaded as if it had just arrived
+        journal.recordGameState(GameState.LOGGED_IN, client.getWorld());
+        journal.recordVarbit(client.getVarbitValue(DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT));
+        for (GameObject lamp : stateManager.getSpawnedLamps().values()) {
+            journal.recordGameObject(true, lamp.getId(), lamp.getWorldLocation());
+        }
+        for (int plane = 0; plane < SceneObjectIndex.PLANES; plane++) {
+            for (GameObject stair : stateManager.getStairs().getOnPlane(plane)) {
+                journal.recordGameObject(true, stair.getId(), stair.getWorldLocation());
+            }
+            for (WallObject door : stateManager.getDoors().getOnPlane(plane)) {
+                journal.recordWallObject(true, door.getId(), door.getWorldLocation());
+            }
+        }
+        if (stateManager.getWireMachine() != null) {
+            journal.recordGameObject(true, stateManager.getWireMachine().getId(),
+                    stateManager.getWireMachine().getWorldLocation());
+        }
+    }
 
-        if (panel.isVisible()) {
-            panel.update();
+    private void stopJournal() {
+        if (journal != null) {
+            journal.flush();
+            log.info("Stopped recording event journal to {}", journal.getFile());
+            journal = null;
+        }
+    }
+
+    private void dumpPathfinderMetrics() {
+        if (pathfinder == null || fileWriterExecutor == null || !config.showPathfinderMetrics()) {
+            return;
         }
 
-        client.clearHintArrow();
+        File file = new File(pluginDirectory, DKLampsConstants.PATHFINDER_METRICS_FILE);
+        fileWriterExecutor.execute(() -> {
+            try {
+                pathfinder.getMetrics().dump(file);
+            } catch (IOException e) {
+                log.warn("Failed to write pathfinder metrics to {}", file, e);
+            }
+        });
     }
 
     @Provides
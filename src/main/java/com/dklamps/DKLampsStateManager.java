@@ -2,10 +2,12 @@ package com.dklamps;
 
 import com.dklamps.enums.Area;
 import com.dklamps.enums.Lamp;
-import com.dklamps.enums.LampStatus;
-import com.dklamps.enums.Transport;
+import com.dklamps.pathfinder.WorldPointUtil;
+import com.dklamps.state.LampKnowledgeEngine;
+import com.dklamps.state.LampStateMask;
+import com.dklamps.state.SceneObjectIndex;
+import com.dklamps.state.WorldLampCache;
 
-import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -22,21 +24,23 @@ import net.runelite.api.HintArrowType;
 import net.runelite.api.WallObject;
 import net.runelite.api.coords.WorldPoint;
 import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.VarbitChanged;
 
 @Slf4j
 public class DKLampsStateManager {
 
     private final Client client;
     private final DKLampsStatsTracker statsTracker;
+    private final WorldLampCache worldCache;
 
     @Getter
-    private final Map<Lamp, LampStatus> lampStatuses = new EnumMap<>(Lamp.class);
+    private LampStateMask lampState = LampStateMask.ALL_UNKNOWN;
     @Getter
     private final Map<WorldPoint, GameObject> spawnedLamps = new HashMap<>();
     @Getter
-    private final Set<WallObject> doors = new HashSet<>();
+    private final SceneObjectIndex<WallObject> doors = new SceneObjectIndex<>();
     @Getter
-    private final Set<GameObject> stairs = new HashSet<>();
+    private final SceneObjectIndex<GameObject> stairs = new SceneObjectIndex<>();
     @Getter
     private final Set<GameObject> informativeStairs = new HashSet<>();
     @Getter
@@ -44,39 +48,49 @@ public class DKLampsStateManager {
     @Getter
     private int wireRespawnTick = -1;
 
-    private Set<Lamp> previouslyBrokenLamps = new HashSet<>();
+    private long previouslyBrokenLamps = 0L;
     @Getter
     private Area currentArea = null;
     private Area lastArea = null;
     private String lastHintDirection = null;
     private String lastHintFloor = null;
-    private final Set<Lamp> fixedLamps = new HashSet<>();
     @Getter
-    private final Set<Lamp> brokenLamps = new HashSet<>();
-    private boolean isLampFixed = false;
-    private int gameTickCounter = 0;
-    private static final int HEAVY_OPERATIONS_INTERVAL = 5;
-
-    public DKLampsStateManager(Client client, DKLampsStatsTracker statsTracker) {
+    private long brokenLamps = 0L;
+    private final LampKnowledgeEngine knowledgeEngine = new LampKnowledgeEngine();
+    private int lampVarbit = -1;
+    private boolean lampStateDirty = false;
+    @Getter
+    private int lampStateGeneration = 0;
+    private int currentWorld = -1;
+    private WorldLampCache.Entry staleEntry = null;
+    // Destination area of each spawned stair, keyed by its packed tile
+    private final Map<Integer, Area> stairDestinations = new HashMap<>();
+    private boolean informativeStairsDirty = true;
+    private int informativeStairsPlayerTile = WorldPointUtil.UNDEFINED;
+    private int informativeStairsGeneration = -1;
+
+    public DKLampsStateManager(Client client, DKLampsStatsTracker statsTracker, WorldLampCache worldCache) {
         this.client = client;
         this.statsTracker = statsTracker;
+        this.worldCache = worldCache;
         resetLampStatuses();
     }
 
     public void shutDown() {
         spawnedLamps.clear();
         doors.clear();
-        stairs.clear();
-        informativeStairs.clear();
-        previouslyBrokenLamps.clear();
-        fixedLamps.clear();
-        brokenLamps.clear();
+        clearStairs();
+        previouslyBrokenLamps = 0L;
+        brokenLamps = 0L;
 
         wireMachine = null;
         lastArea = null;
-        gameTickCounter = 0;
-        isLampFixed = false;
+        lampVarbit = -1;
+        lampStateDirty = false;
         wireRespawnTick = -1;
+        currentWorld = -1;
+        staleEntry = null;
+        worldCache.save();
     }
 
     public void onGameTick() {
@@ -84,58 +98,69 @@ public class DKLampsStateManager {
             return;
         }
 
-        gameTickCounter++;
-        boolean isHeavyOperationTick = (gameTickCounter % HEAVY_OPERATIONS_INTERVAL) == 0;
-
-        currentArea = DKLampsHelper.getArea(client.getLocalPlayer().getWorldLocation());
+        WorldPoint playerLocation = client.getLocalPlayer().getWorldLocation();
+        currentArea = DKLampsHelper.getArea(playerLocation);
         if (currentArea == null) {
             lastArea = null;
             return;
         }
 
+        // The varbit only describes the new area from the next tick on, so wait a tick before decoding.
         if (!currentArea.equals(lastArea)) {
             lastArea = currentArea;
-            previouslyBrokenLamps.clear();
+            previouslyBrokenLamps = 0L;
+            lampStateDirty = true;
             return;
         }
 
-        int lampVarbit = client.getVarbitValue(DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT);
+        if (lampVarbit == -1) {
+            lampVarbit = client.getVarbitValue(DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT);
+            lampStateDirty = true;
+        }
 
-        brokenLamps.clear();
-        brokenLamps.addAll(DKLampsHelper.getBrokenLamps(lampVarbit, currentArea));
+        if (lampStateDirty) {
+            lampStateDirty = false;
+            updateLampStatuses();
+        }
 
-        if (!brokenLamps.equals(previouslyBrokenLamps)) {
-            fixedLamps.clear();
-            fixedLamps.addAll(previouslyBrokenLamps);
-            fixedLamps.removeAll(brokenLamps);
+        updateInformativeStairs(playerLocation);
+    }
 
-            if (!fixedLamps.isEmpty()) {
-                statsTracker.incrementLampsFixed();
-                isLampFixed = true;
-            }
+    public void onVarbitChanged(VarbitChanged varbitChanged) {
+        if (varbitChanged.getVarbitId() != DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT
+                || varbitChanged.getValue() == lampVarbit) {
+            return;
         }
 
-        Map<Lamp, LampStatus> newStatuses = DKLampsHelper.updateLampStatuses(
-                lampStatuses,
-                brokenLamps,
-                isLampFixed,
-                currentArea);
+        lampVarbit = varbitChanged.getValue();
+        lampStateDirty = true;
+    }
 
-        if (isLampFixed) {
-            detectRuneLiteHintArrow(newStatuses);
-            isLampFixed = false;
+    private void updateLampStatuses() {
+        brokenLamps = DKLampsHelper.getBrokenLamps(lampVarbit, currentArea);
+
+        long fixedLamps = previouslyBrokenLamps & ~brokenLamps;
+        if (fixedLamps != 0) {
+            for (long fixed = fixedLamps; fixed != 0; fixed &= fixed - 1) {
+                statsTracker.onLampFixed(LampStateMask.lamp(Long.numberOfTrailingZeros(fixed)), client.getTickCount());
+            }
+            Area oppositeArea = currentArea.getOpposite();
+            knowledgeEngine.onLampFixed(LampStateMask.areaMask(currentArea) | LampStateMask.areaMask(oppositeArea),
+                    client.getTickCount());
+            detectRuneLiteHintArrow();
         }
 
-        lampStatuses.clear();
-        lampStatuses.putAll(newStatuses);
+        knowledgeEngine.observe(LampStateMask.observedMask(currentArea), brokenLamps);
+        LampStateMask newState = knowledgeEngine.propagate();
 
-        if (isHeavyOperationTick) {
-            detectInformativeStairs();
+        if (!newState.equals(lampState)) {
+            lampState = newState;
+            lampStateGeneration++;
+            worldCache.put(client.getWorld(), client.getTickCount(), System.currentTimeMillis(), lampState,
+                    staleEntry);
         }
 
-        previouslyBrokenLamps.clear();
-        previouslyBrokenLamps.addAll(brokenLamps);
-        lastArea = currentArea;
+        previouslyBrokenLamps = brokenLamps;
     }
 
     public void onGameObjectSpawned(GameObject gameObject) {
@@ -143,6 +168,14 @@ public class DKLampsStateManager {
             spawnedLamps.put(gameObject.getWorldLocation(), gameObject);
         } else if (DKLampsConstants.STAIR_IDS.contains(gameObject.getId())) {
             stairs.add(gameObject);
+            Area destination = DKLampsHelper.getStairDestinationArea(gameObject.getWorldLocation(), gameObject.getId());
+            int stairTile = WorldPointUtil.packWorldPoint(gameObject.getWorldLocation());
+            if (destination != null) {
+                stairDestinations.put(stairTile, destination);
+                informativeStairsDirty = true;
+            } else if (stairDestinations.remove(stairTile) != null) {
+                informativeStairsDirty = true;
+            }
         } else if (DKLampsConstants.WIRE_MACHINE_IDS.contains(gameObject.getId())) {
             wireMachine = gameObject;
             if (gameObject.getId() == DKLampsConstants.WIRE_MACHINE_INACTIVE) {
@@ -157,7 +190,11 @@ public class DKLampsStateManager {
         if (DKLampsHelper.isLamp(gameObject.getId())) {
             spawnedLamps.remove(gameObject.getWorldLocation());
         } else if (DKLampsConstants.STAIR_IDS.contains(gameObject.getId())) {
+            boolean indexed = stairs.contains(gameObject);
             stairs.remove(gameObject);
+            if (indexed && stairDestinations.remove(WorldPointUtil.packWorldPoint(gameObject.getWorldLocation())) != null) {
+                informativeStairsDirty = true;
+            }
         } else if (DKLampsConstants.WIRE_MACHINE_IDS.contains(gameObject.getId())) {
             wireMachine = null;
             wireRespawnTick = -1;
@@ -183,18 +220,57 @@ public class DKLampsStateManager {
 
             spawnedLamps.clear();
             doors.clear();
-            stairs.clear();
-            informativeStairs.clear();
+            clearStairs();
             wireMachine = null;
             wireRespawnTick = -1;
             currentArea = null;
 
             if (gameState != GameState.LOADING) {
                 resetLampStatuses();
+                // The next world's first decode must not be diffed against this world's lamps
+                previouslyBrokenLamps = 0L;
+                lastArea = null;
+                lampVarbit = -1;
+                currentWorld = -1;
+                staleEntry = null;
+                worldCache.save();
+            }
+        } else if (gameState == GameState.LOGGED_IN && client.getWorld() != currentWorld) {
+            currentWorld = client.getWorld();
+            staleEntry = worldCache.get(currentWorld, System.currentTimeMillis());
+            if (staleEntry != null) {
+                log.debug("Restored stale lamp state for world {}", currentWorld);
             }
         }
     }
 
+    private void clearStairs() {
+        stairs.clear();
+        stairDestinations.clear();
+        informativeStairs.clear();
+        informativeStairsDirty = true;
+    }
+
+    /**
+     * Lamps that were broken when this world was last visited and are not known yet this visit.
+     */
+    public long getStaleBrokenLamps() {
+        return staleEntry == null ? 0L : staleEntry.getAllBroken() & lampState.getUnknown();
+    }
+
+    public double getStaleConfidence(Lamp lamp) {
+        return staleEntry == null ? 0.0 : staleEntry.confidence(LampStateMask.bit(lamp), System.currentTimeMillis());
+    }
+
+    /**
+     * Stale broken lamps, without those too old to be worth walking to.
+     */
+    public long getTrustedStaleBrokenLamps() {
+        return staleEntry == null ? 0L
+                : staleEntry.getBroken(System.currentTimeMillis(), DKLampsConstants.MIN_STALE_CONFIDENCE)
+                        & lampState.getUnknown();
+    }
+
     public void onChatMessage(ChatMessage chatMessage) {
         ChatMessageType chatMessageType = chatMessage.getType();
         String message = chatMessage.getMessage();
@@ -213,86 +289,71 @@ public class DKLampsStateManager {
                     matcher.group(1), matcher.group(2));
             lastHintDirection = matcher.group(1);
             lastHintFloor = matcher.group(2);
+
+            if (client.getLocalPlayer() != null) {
+                knowledgeEngine.addBrokenHint(
+                        LampKnowledgeEngine.lampsMatchingHint(client.getLocalPlayer().getWorldLocation(),
+                                lastHintDirection, lastHintFloor),
+                        client.getTickCount());
+                lampStateDirty = true;
+            }
         }
     }
 
     private void resetLampStatuses() {
-        lampStatuses.clear();
-        for (Lamp lamp : Lamp.values()) {
-            lampStatuses.put(lamp, LampStatus.UNKNOWN);
-        }
+        knowledgeEngine.reset();
+        lampState = LampStateMask.ALL_UNKNOWN;
+        lampStateGeneration++;
     }
 
-    private void detectInformativeStairs() {
-        informativeStairs.clear();
-
-        WorldPoint playerLocation = client.getLocalPlayer().getWorldLocation();
-        if (playerLocation == null || stairs.isEmpty()) {
+    /**
+     * Keeps, per area with unknown lamps, the stair leading there that is closest to the player. Only
+     * recomputed when the player, the lamp knowledge or the spawned stairs changed.
+     */
+    private void updateInformativeStairs(WorldPoint playerLocation) {
+        int playerTile = WorldPointUtil.packWorldPoint(playerLocation);
+        if (!informativeStairsDirty && playerTile == informativeStairsPlayerTile
+                && lampStateGeneration == informativeStairsGeneration) {
             return;
         }
+        informativeStairsDirty = false;
+        informativeStairsPlayerTile = playerTile;
+        informativeStairsGeneration = lampStateGeneration;
 
-        Map<Area, GameObject> closestStairForArea = new EnumMap<>(Area.class);
-        Map<Area, Integer> minDistanceForArea = new EnumMap<>(Area.class);
-
-        for (GameObject stair : stairs) {
-            WorldPoint stairLocation = stair.getWorldLocation();
-            int distanceToPlayer = playerLocation.distanceTo(stairLocation);
-
-            Area targetArea;
-            if (DKLampsConstants.STAIR_IDS_UP.contains(stair.getId())) {
-                targetArea = DKLampsHelper.getArea(stairLocation.dz(1));
-            } else if (DKLampsConstants.STAIR_IDS_DOWN.contains(stair.getId())) {
-                targetArea = DKLampsHelper.getArea(stairLocation.dz(-1));
-            } else {
+        informativeStairs.clear();
+        if (stairDestinations.isEmpty()) {
+            return;
+        }
+        for (Area area : Area.values()) {
+            if (!lampState.hasUnknownIn(area)) {
                 continue;
             }
 
-            if (targetArea != null && DKLampsHelper.areaHasUnknownLamps(targetArea, lampStatuses)) {
-                int currentMinDistance = minDistanceForArea.getOrDefault(targetArea, Integer.MAX_VALUE);
-
-                if (distanceToPlayer < currentMinDistance) {
-                    minDistanceForArea.put(targetArea, distanceToPlayer);
-                    closestStairForArea.put(targetArea, stair);
-                }
+            GameObject closestStair = stairs.nearest(playerLocation, stair -> destinationOf(stair) == area);
+            if (closestStair != null) {
+                informativeStairs.add(closestStair);
             }
         }
-
-        informativeStairs.addAll(closestStairForArea.values());
     }
 
-    private void detectRuneLiteHintArrow(Map<Lamp, LampStatus> newStatuses) {
-        boolean currentlyHasHintArrow = client.hasHintArrow();
-        WorldPoint currentHintArrowPoint = null;
+    private Area destinationOf(GameObject stair) {
+        return stairDestinations.get(WorldPointUtil.packWorldPoint(stair.getWorldLocation()));
+    }
 
-        if (currentlyHasHintArrow && client.getHintArrowType() == HintArrowType.COORDINATE) {
-            currentHintArrowPoint = client.getHintArrowPoint();
-            log.info("RuneLite hint arrow detected at {}", currentHintArrowPoint);
+    private void detectRuneLiteHintArrow() {
+        if (!client.hasHintArrow() || client.getHintArrowType() != HintArrowType.COORDINATE) {
+            return;
         }
 
-        if (currentlyHasHintArrow && currentHintArrowPoint != null) {
-
-            for (Lamp lamp : Lamp.values()) {
-                WorldPoint lampLocation = lamp.getWorldPoint();
-                if (lampLocation.getX() == currentHintArrowPoint.getX() &&
-                    lampLocation.getY() == currentHintArrowPoint.getY()) {
-                        
-                    int playerPlane = client.getLocalPlayer().getWorldLocation().getPlane();
-                    boolean planeMatches = false;
-
-                    if (lastHintFloor.equals("upstairs") && lampLocation.getPlane() > playerPlane) {
-                        planeMatches = true;
-                    } else if (lastHintFloor.equals("downstairs") && lampLocation.getPlane() < playerPlane) {
-                        planeMatches = true;
-                    } else if (lastHintFloor.equals("on the same floor") && lampLocation.getPlane() == playerPlane) {
-                        planeMatches = true;
-                    }
-
-                    if (planeMatches) {
-                        newStatuses.put(lamp, LampStatus.BROKEN);
-                        break;
-                    }
-                }
-            }
+        WorldPoint hintArrowPoint = client.getHintArrowPoint();
+        if (hintArrowPoint == null) {
+            return;
         }
+
+        log.info("RuneLite hint arrow detected at {}", hintArrowPoint);
+        int playerPlane = client.getLocalPlayer().getWorldLocation().getPlane();
+        knowledgeEngine.addBrokenHint(
+                LampKnowledgeEngine.lampsAtHintArrow(hintArrowPoint, playerPlane, lastHintFloor),
+                client.getTickCount());
     }
 }
@@ -1,9 +1,15 @@
 package com.dklamps;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.regex.Matcher;
 
+import com.dklamps.enums.InventoryState;
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.TargetType;
+import com.dklamps.stats.BreakModel;
+import com.dklamps.stats.FixTimeline;
+import com.dklamps.stats.LegTimer;
+import com.dklamps.stats.SessionHistory;
+import com.dklamps.stats.SessionLog;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
@@ -11,31 +17,129 @@ import net.runelite.api.events.ChatMessage;
 
 @Slf4j
 public class DKLampsStatsTracker {
+    private static final int MIN_FIXES_FOR_RATE = 3;
 
     @Getter
     private int lampsFixed = 0;
     @Getter
-    private int lampsPerHr = 0;
-    @Getter
     private int totalLampsFixed = 0;
-    
-    private Instant start;
 
-    public DKLampsStatsTracker() {}
+    private final FixTimeline timeline = new FixTimeline();
+    @Getter
+    private final LegTimer legs;
+    @Getter
+    private final BreakModel breakModel = new BreakModel();
+    // Null when history is not kept
+    private final SessionLog sessionLog;
+    private boolean sessionStarted = false;
+    private int lastTick = 0;
+
+    public DKLampsStatsTracker() {
+        this(null);
+    }
+
+    public DKLampsStatsTracker(SessionLog sessionLog) {
+        this.sessionLog = sessionLog;
+        this.legs = new LegTimer(this::onLegFinished);
+    }
+
+    /**
+     * Restores the lifetime total and the break model from earlier sessions, so both are known
+     * before the game reports anything.
+     */
+    public SessionHistory loadHistory() {
+        SessionHistory history = new SessionHistory();
+        if (sessionLog != null) {
+            sessionLog.read((type, detail, tick, timeMillis, value) -> {
+                history.visit(type, detail, tick, timeMillis, value);
+                breakModel.visit(type, detail, tick, timeMillis, value);
+            });
+            breakModel.publish();
+            totalLampsFixed = (int) Math.max(totalLampsFixed, history.getTotalLampsFixed());
+            log.debug("Loaded {} sessions with {} lamp fixes", history.getSessions(), breakModel.getTotalBreaks());
+        }
+        return history;
+    }
+
+    public void onLampFixed(Lamp lamp, int tick) {
+        long now = System.currentTimeMillis();
+        incrementLampsFixed(now);
+        breakModel.onLampFixed(lamp);
+        if (sessionLog != null) {
+            startSession(tick, now);
+            sessionLog.append(SessionLog.LAMP_FIXED, lamp.ordinal(), tick, now, 0);
+        }
+    }
 
-    public void incrementLampsFixed() {
+    private void incrementLampsFixed(long nowMillis) {
         ++lampsFixed;
+        timeline.record(nowMillis);
+        legs.split();
+    }
+
+    public void onGameTick(int tick, TargetType targetType, InventoryState inventoryState) {
+        lastTick = tick;
+        if (sessionLog != null) {
+            startSession(tick, System.currentTimeMillis());
+        }
+        legs.onGameTick(tick, targetType, inventoryState);
+    }
+
+    /**
+     * Closes the logged session, if one was started, and hands its records to the writer.
+     */
+    public void endSession() {
+        if (sessionLog == null || !sessionStarted) {
+            return;
+        }
+        sessionStarted = false;
+        sessionLog.append(SessionLog.SESSION_END, 0, lastTick, System.currentTimeMillis(), lampsFixed);
+        sessionLog.flush();
+    }
 
-        if (start == null) {
-            start = Instant.now();
+    private void startSession(int tick, long nowMillis) {
+        if (!sessionStarted) {
+            sessionStarted = true;
+            sessionLog.append(SessionLog.SESSION_START, 0, tick, nowMillis, 0);
         }
+    }
+
+    private void onLegFinished(TargetType type, int endTick, int ticks) {
+        if (sessionLog != null && sessionStarted) {
+            sessionLog.append(SessionLog.LEG, type.ordinal(), endTick, System.currentTimeMillis(), ticks);
+        }
+    }
 
-        Duration elapsed = Duration.between(start, Instant.now());
-        long elapsedMs = elapsed.toMillis();
+    /**
+     * @return lamps per hour over the session's active time, 0 until there are enough fixes
+     */
+    public int getLampsPerHr() {
+        if (lampsFixed < MIN_FIXES_FOR_RATE) {
+            return 0;
+        }
+        return (int) timeline.getRatePerHour(System.currentTimeMillis());
+    }
 
-        if (lampsFixed >= 3 && elapsedMs > 0) {
-            lampsPerHr = (int) ((double) lampsFixed * Duration.ofHours(1).toMillis() / elapsedMs);
+    /**
+     * @return lamps per hour over the last {@code windowMillis}, 0 until there are enough fixes
+     */
+    public int getRollingLampsPerHr(long windowMillis) {
+        if (lampsFixed < MIN_FIXES_FOR_RATE) {
+            return 0;
         }
+        return (int) timeline.getRatePerHour(windowMillis, System.currentTimeMillis());
+    }
+
+    public long getMedianMillisBetweenFixes() {
+        return timeline.getMedianIntervalMillis();
+    }
+
+    public long getSessionActiveMillis() {
+        return timeline.getActiveMillis(System.currentTimeMillis());
+    }
+
+    public boolean isIdle() {
+        return timeline.isIdle(System.currentTimeMillis());
     }
 
     public void onChatMessage(ChatMessage chatMessage) {
@@ -58,6 +162,9 @@ public class DKLampsStatsTracker {
 
                 if (number > 0 && number > this.totalLampsFixed) {
                     this.totalLampsFixed = number;
+                    if (sessionLog != null) {
+                        sessionLog.append(SessionLog.TOTAL_FIXED, 0, lastTick, System.currentTimeMillis(), number);
+                    }
                 }
             } catch (NumberFormatException e) {
                 log.warn("Failed to parse number from chat message: {}", matcher.group(1));
@@ -67,7 +174,7 @@ public class DKLampsStatsTracker {
 
     public void resetSession() {
         lampsFixed = 0;
-        lampsPerHr = 0;
-        start = null;
+        timeline.clear();
+        legs.clear();
     }
 }
@@ -1,36 +1,14 @@
 package com.dklamps.enums;
 
-import com.dklamps.DKLampsConstants;
-
-import net.runelite.api.Client;
-import net.runelite.api.Item;
-import net.runelite.api.ItemContainer;
-
 public enum InventoryState {
     NO_LIGHT_BULBS,
     ONLY_EMPTY_BULBS,
     HAS_WORKING_BULBS;
 
-    public InventoryState getInventoryState(Client client) {
-        ItemContainer inventory = client.getItemContainer(DKLampsConstants.INVENTORY_ID);
-        if (inventory == null) {
-            return InventoryState.NO_LIGHT_BULBS;
-        }
-
-        boolean hasWorkingBulbs = false;
-        boolean hasEmptyBulbs = false;
-
-        for (Item item : inventory.getItems()) {
-            if (item.getId() == DKLampsConstants.LIGHT_BULB_WORKING) {
-                hasWorkingBulbs = true;
-            } else if (item.getId() == DKLampsConstants.LIGHT_BULB_EMPTY) {
-                hasEmptyBulbs = true;
-            }
-        }
-
-        if (hasWorkingBulbs) {
+    public static InventoryState of(int workingBulbs, int emptyBulbs) {
+        if (workingBulbs > 0) {
             return HAS_WORKING_BULBS;
-        } else if (hasEmptyBulbs) {
+        } else if (emptyBulbs > 0) {
             return ONLY_EMPTY_BULBS;
         } else {
             return NO_LIGHT_BULBS;
@@ -0,0 +1,6 @@
+package com.dklamps.enums;
+
+public enum LampSearchMode {
+    SEQUENTIAL,
+    PARALLEL
+}
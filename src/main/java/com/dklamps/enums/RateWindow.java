@@ -0,0 +1,19 @@
+package com.dklamps.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum RateWindow {
+    FIVE_MINUTES("5m", 5),
+    FIFTEEN_MINUTES("15m", 15),
+    ONE_HOUR("1h", 60);
+
+    private final String displayName;
+    private final int minutes;
+
+    public long getMillis() {
+        return minutes * 60_000L;
+    }
+}
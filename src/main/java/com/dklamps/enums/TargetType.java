@@ -9,7 +9,8 @@ public enum TargetType {
     NONE("None"),
     LAMP("Lamp"),
     BANK("Bank"),
-    WIRING_MACHINE("Wiring machine");
+    WIRING_MACHINE("Wiring machine"),
+    SCOUT("Scouting");
 
     private final String displayName;
 }
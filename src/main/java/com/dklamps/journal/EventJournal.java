@@ -0,0 +1,283 @@
+package com.dklamps.journal;
+
+import com.dklamps.DKLampsConstants;
+import com.dklamps.DKLampsHelper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.GameState;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Binary recording of everything the state and navigation pipeline reads from the game, in the
+ * order it arrived, so a session can be replayed offline. Like the {@link com.dklamps.stats.SessionLog}
+ * records are encoded on the client thread and appended to the file on {@code writer}.
+ *
+ * <p>Every record is a type byte followed by its fields, big-endian. Locations are x and y as
+ * shorts and the plane as a byte. Only objects and chat message types the plugin reacts to are
+ * recorded, so other scenery and player chat never end up in a journal.
+ */
+@Slf4j
+public class EventJournal {
+    // tick (int), location, working bulbs (byte), empty bulbs (byte), hint arrow flag (byte) [, location]
+    private static final int TICK = 1;
+    // lamp varbit value (int)
+    private static final int VARBIT = 2;
+    // object id (int), location
+    private static final int GAME_OBJECT_SPAWNED = 3;
+    private static final int GAME_OBJECT_DESPAWNED = 4;
+    private static final int WALL_OBJECT_SPAWNED = 5;
+    private static final int WALL_OBJECT_DESPAWNED = 6;
+    // chat message type (string), message (string)
+    private static final int CHAT_MESSAGE = 7;
+    // game state (string), world (short)
+    private static final int GAME_STATE = 8;
+
+    private static final int FILE_MAGIC = 0x444B454A; // "DKEJ"
+    private static final int FILE_VERSION = 1;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_STRING_BYTES = 512;
+    private static final int FLUSH_INTERVAL_TICKS = 100;
+
+    public interface Visitor {
+        void onTick(int tick, WorldPoint location, int workingBulbs, int emptyBulbs, WorldPoint hintArrow);
+
+        void onVarbit(int value);
+
+        void onGameObject(boolean spawned, int id, WorldPoint location);
+
+        void onWallObject(boolean spawned, int id, WorldPoint location);
+
+        void onChatMessage(ChatMessageType type, String message);
+
+        void onGameState(GameState state, int world);
+    }
+
+    private final File file;
+    private final Executor writer;
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean headerWritten = false;
+    private int lastFlushTick = 0;
+
+    public EventJournal(File file, Executor writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Objects the state manager keeps track of; nothing else is worth recording.
+     */
+    public static boolean isRecorded(int objectId) {
+        return DKLampsHelper.isLamp(objectId)
+                || DKLampsConstants.STAIR_IDS.contains(objectId)
+                || DKLampsConstants.WIRE_MACHINE_IDS.contains(objectId)
+                || DKLampsConstants.DOOR_IDS.contains(objectId);
+    }
+
+    public static boolean isRecorded(ChatMessageType type) {
+        return type == ChatMessageType.GAMEMESSAGE || type == ChatMessageType.SPAM;
+    }
+
+    public synchronized void recordTick(int tick, WorldPoint location, int workingBulbs, int emptyBulbs,
+            WorldPoint hintArrow) {
+        reserve(18);
+        pending.put((byte) TICK);
+        pending.putInt(tick);
+        putLocation(location);
+        pending.put((byte) workingBulbs);
+        pending.put((byte) emptyBulbs);
+        pending.put((byte) (hintArrow != null ? 1 : 0));
+        if (hintArrow != null) {
+            putLocation(hintArrow);
+        }
+
+        if (tick - lastFlushTick >= FLUSH_INTERVAL_TICKS) {
+            lastFlushTick = tick;
+            flush();
+        }
+    }
+
+    public synchronized void recordVarbit(int value) {
+        reserve(5);
+        pending.put((byte) VARBIT);
+        pending.putInt(value);
+    }
+
+    public synchronized void recordGameObject(boolean spawned, int id, WorldPoint location) {
+        recordObject(spawned ? GAME_OBJECT_SPAWNED : GAME_OBJECT_DESPAWNED, id, location);
+    }
+
+    public synchronized void recordWallObject(boolean spawned, int id, WorldPoint location) {
+        recordObject(spawned ? WALL_OBJECT_SPAWNED : WALL_OBJECT_DESPAWNED, id, location);
+    }
+
+    public synchronized void recordChatMessage(ChatMessageType type, String message) {
+        byte[] typeName = encode(type.name());
+        byte[] text = encode(message);
+        reserve(5 + typeName.length + text.length);
+        pending.put((byte) CHAT_MESSAGE);
+        putString(typeName);
+        putString(text);
+    }
+
+    public synchronized void recordGameState(GameState state, int world) {
+        byte[] stateName = encode(state.name());
+        reserve(5 + stateName.length);
+        pending.put((byte) GAME_STATE);
+        putString(stateName);
+        pending.putShort((short) world);
+    }
+
+    private void recordObject(int type, int id, WorldPoint location) {
+        reserve(10);
+        pending.put((byte) type);
+        pending.putInt(id);
+        putLocation(location);
+    }
+
+    private void putLocation(WorldPoint location) {
+        pending.putShort((short) location.getX());
+        pending.putShort((short) location.getY());
+        pending.put((byte) location.getPlane());
+    }
+
+    private void putString(byte[] bytes) {
+        pending.putShort((short) bytes.length);
+        pending.put(bytes);
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_STRING_BYTES) {
+            return bytes;
+        }
+        byte[] truncated = new byte[MAX_STRING_BYTES];
+        System.arraycopy(bytes, 0, truncated, 0, MAX_STRING_BYTES);
+        return truncated;
+    }
+
+    private void reserve(int bytes) {
+        if (pending.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands everything recorded so far to the writer.
+     */
+    public synchronized void flush() {
+        if (pending.position() == 0) {
+            return;
+        }
+
+        pending.flip();
+        ByteBuffer records = pending;
+        pending = ByteBuffer.allocate(BUFFER_SIZE);
+        boolean writeHeader = !headerWritten;
+        headerWritten = true;
+        writer.execute(() -> write(records, writeHeader));
+    }
+
+    private void write(ByteBuffer records, boolean writeHeader) {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            log.warn("Failed to create journal directory {}", directory);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (writeHeader) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                header.putInt(FILE_MAGIC).putInt(FILE_VERSION).flip();
+                channel.write(header);
+            }
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to append to journal {}", file, e);
+        }
+    }
+
+    /**
+     * Streams every record of {@code file} to {@code visitor} in recorded order. A record cut short
+     * at the end of the file ends the journal.
+     *
+     * @return the number of ticks read
+     */
+    public static int read(File file, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+                throw new IOException("Not a journal: " + file);
+            }
+
+            int ticks = 0;
+            try {
+                while (buffer.hasRemaining()) {
+                    int type = buffer.get();
+                    switch (type) {
+                        case TICK:
+                            int tick = buffer.getInt();
+                            WorldPoint location = getLocation(buffer);
+                            int workingBulbs = buffer.get();
+                            int emptyBulbs = buffer.get();
+                            WorldPoint hintArrow = buffer.get() != 0 ? getLocation(buffer) : null;
+                            visitor.onTick(tick, location, workingBulbs, emptyBulbs, hintArrow);
+                            ticks++;
+                            break;
+                        case VARBIT:
+                            visitor.onVarbit(buffer.getInt());
+                            break;
+                        case GAME_OBJECT_SPAWNED:
+                        case GAME_OBJECT_DESPAWNED:
+                            visitor.onGameObject(type == GAME_OBJECT_SPAWNED, buffer.getInt(), getLocation(buffer));
+                            break;
+                        case WALL_OBJECT_SPAWNED:
+                        case WALL_OBJECT_DESPAWNED:
+                            visitor.onWallObject(type == WALL_OBJECT_SPAWNED, buffer.getInt(), getLocation(buffer));
+                            break;
+                        case CHAT_MESSAGE:
+                            ChatMessageType chatType = ChatMessageType.valueOf(getString(buffer));
+                            visitor.onChatMessage(chatType, getString(buffer));
+                            break;
+                        case GAME_STATE:
+                            GameState state = GameState.valueOf(getString(buffer));
+                            visitor.onGameState(state, buffer.getShort());
+                            break;
+                        default:
+                            throw new IOException("Unknown journal record " + type + " at " + (buffer.position() - 1));
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                log.debug("Journal {} ends in a partial record", file);
+            }
+            return ticks;
+        }
+    }
+
+    private static WorldPoint getLocation(ByteBuffer buffer) {
+        int x = buffer.getShort();
+        int y = buffer.getShort();
+        return new WorldPoint(x, y, buffer.get());
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,160 @@
+package com.dklamps.navigation;
+
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.LampSearchMode;
+import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.state.LampStateMask;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Finds the broken lamp with the shortest path from a start tile. Candidates are visited in order
+ * of their lower-bound path size, and any candidate whose bound already exceeds the best path
+ * found so far is skipped without running the pathfinder. Candidates tied on the bound are still
+ * evaluated, so ties go to the first candidate in that order whichever search mode is used.
+ */
+@Slf4j
+public class ClosestLampSearch {
+    private static final Comparator<Candidate> BY_LOWER_BOUND = Comparator
+            .comparingInt((Candidate candidate) -> candidate.lowerBound)
+            .thenComparingInt(candidate -> candidate.lamp.ordinal());
+
+    private final Pathfinder pathfinder;
+    private final ForkJoinPool pool;
+
+    public ClosestLampSearch(Pathfinder pathfinder, ForkJoinPool pool) {
+        this.pathfinder = pathfinder;
+        this.pool = pool;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Result {
+        private final Lamp lamp;
+        private final List<WorldPoint> path;
+        private final int distance;
+    }
+
+    private static final class Candidate {
+        private final Lamp lamp;
+        private final int lowerBound;
+        private List<WorldPoint> path;
+        private int distance = Integer.MAX_VALUE;
+
+        private Candidate(Lamp lamp, int lowerBound) {
+            this.lamp = lamp;
+            this.lowerBound = lowerBound;
+        }
+    }
+
+    /**
+     * @return the closest lamp, or {@code null} when the search was aborted or no candidate
+     *         produced a path.
+     */
+    public Result find(WorldPoint start, long lamps, LampSearchMode mode, BooleanSupplier aborted) {
+        Candidate[] candidates = new Candidate[Long.bitCount(lamps)];
+        int index = 0;
+        for (long remaining = lamps; remaining != 0; remaining &= remaining - 1) {
+            Lamp lamp = LampStateMask.lamp(Long.numberOfTrailingZeros(remaining));
+            candidates[index++] = new Candidate(lamp, pathfinder.estimateMinimumPathSize(start, lamp.getWorldPoint()));
+        }
+        Arrays.sort(candidates, BY_LOWER_BOUND);
+
+        AtomicInteger best = new AtomicInteger(Integer.MAX_VALUE);
+        if (mode == LampSearchMode.PARALLEL && pool != null && candidates.length > 1) {
+            evaluateParallel(start, candidates, best, aborted);
+        } else {
+            evaluateSequential(start, candidates, best, aborted);
+        }
+
+        if (aborted.getAsBoolean()) {
+            return null;
+        }
+
+        Candidate closest = null;
+        for (Candidate candidate : candidates) {
+            if (candidate.path != null && (closest == null || candidate.distance < closest.distance)) {
+                closest = candidate;
+            }
+        }
+        return closest == null ? null : new Result(closest.lamp, closest.path, closest.distance);
+    }
+
+    private void evaluateSequential(WorldPoint start, Candidate[] candidates, AtomicInteger best, BooleanSupplier aborted) {
+        for (Candidate candidate : candidates) {
+            if (aborted.getAsBoolean()) {
+                return;
+            }
+            evaluate(start, candidate, best, aborted);
+        }
+    }
+
+    private void evaluateParallel(WorldPoint start, Candidate[] candidates, AtomicInteger best, BooleanSupplier aborted) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(candidates.length);
+        try {
+            for (Candidate candidate : candidates) {
+                tasks.add(pool.submit(() -> evaluate(start, candidate, best, aborted)));
+            }
+        } catch (RejectedExecutionException e) {
+            log.debug("Lamp search pool rejected work, finishing sequentially");
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+            evaluateSequential(start, Arrays.copyOfRange(candidates, tasks.size(), candidates.length), best, aborted);
+            return;
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    private void evaluate(WorldPoint start, Candidate candidate, AtomicInteger best, BooleanSupplier aborted) {
+        if (aborted.getAsBoolean() || candidate.lowerBound > best.get()) {
+            return;
+        }
+
+        Lamp lamp = candidate.lamp;
+        try {
+            List<WorldPoint> path = pathfinder.findPath(start, lamp.getWorldPoint(), aborted);
+            if (path != null && !path.isEmpty()) {
+                candidate.path = Collections.unmodifiableList(path);
+                candidate.distance = path.size();
+                best.accumulateAndGet(path.size(), Math::min);
+            }
+        } catch (Exception e) {
+            log.debug("Failed to find path to lamp {}: {}", lamp.name(), e.getMessage());
+            candidate.path = directPath(start, lamp.getWorldPoint());
+            candidate.distance = fallbackDistance(lamp, start);
+            best.accumulateAndGet(candidate.distance, Math::min);
+            log.info("Using fallback path to {} with distance {}", lamp.name(), candidate.distance);
+        }
+    }
+
+    public static int fallbackDistance(Lamp lamp, WorldPoint start) {
+        int distance = lamp.getWorldPoint().distanceTo2D(start);
+        if (lamp.getWorldPoint().getPlane() != start.getPlane()) {
+            distance += 32;
+        }
+        return distance;
+    }
+
+    public static List<WorldPoint> directPath(WorldPoint from, WorldPoint to) {
+        List<WorldPoint> path = new ArrayList<>(2);
+        path.add(from);
+        path.add(to);
+        return Collections.unmodifiableList(path);
+    }
+}
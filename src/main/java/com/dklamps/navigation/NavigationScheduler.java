@@ -0,0 +1,109 @@
+package com.dklamps.navigation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Latest-wins scheduler for navigation searches. There is a single pending slot: submitting a
+ * request overwrites whatever is queued, and the running search is asked to abort as soon as a
+ * newer request makes its inputs obsolete.
+ */
+@Slf4j
+public class NavigationScheduler {
+
+    public interface Search {
+        NavigationSnapshot run(PathRequest request, BooleanSupplier aborted);
+    }
+
+    private final ExecutorService executor;
+    private final Search search;
+
+    private volatile PathRequest pending;
+    private volatile PathRequest running;
+    private boolean draining = false;
+    private long generation = 0;
+
+    @Getter
+    private volatile NavigationSnapshot snapshot = NavigationSnapshot.EMPTY;
+
+    public NavigationScheduler(ExecutorService executor, Search search) {
+        this.executor = executor;
+        this.search = search;
+    }
+
+    public synchronized void submit(PathRequest request) {
+        pending = request;
+        if (draining) {
+            return;
+        }
+
+        draining = true;
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining = false;
+            pending = null;
+        }
+    }
+
+    public synchronized void clear() {
+        pending = null;
+        running = null;
+        if (!snapshot.isEmpty()) {
+            snapshot = NavigationSnapshot.EMPTY.withGeneration(++generation);
+        }
+    }
+
+    /**
+     * Publishes a result computed outside the scheduler. Anything queued or running is dropped,
+     * since it answers older inputs than the published result.
+     */
+    public synchronized void publish(NavigationSnapshot result) {
+        pending = null;
+        running = null;
+        snapshot = result.withGeneration(++generation);
+    }
+
+    private void drain() {
+        PathRequest request;
+        while ((request = poll()) != null) {
+            final PathRequest current = request;
+            try {
+                NavigationSnapshot result = search.run(current, () -> isObsolete(current));
+                if (result != null) {
+                    publishIfCurrent(current, result);
+                }
+            } catch (Exception e) {
+                log.error("Navigation search for {} failed", current.getTargetType(), e);
+            }
+        }
+    }
+
+    private synchronized PathRequest poll() {
+        PathRequest request = pending;
+        pending = null;
+        running = request;
+        if (request == null) {
+            draining = false;
+        }
+        return request;
+    }
+
+    private synchronized void publishIfCurrent(PathRequest request, NavigationSnapshot result) {
+        if (running != request || isObsolete(request)) {
+            return;
+        }
+        snapshot = result.withGeneration(++generation);
+    }
+
+    private boolean isObsolete(PathRequest request) {
+        if (running != request) {
+            return true;
+        }
+        PathRequest next = pending;
+        return next != null && request.isSupersededBy(next);
+    }
+}
@@ -0,0 +1,46 @@
+package com.dklamps.navigation;
+
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.TargetType;
+import com.dklamps.enums.Transport;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Immutable result of a navigation search, tagged with the game tick whose inputs it answers.
+ */
+@Getter
+@RequiredArgsConstructor
+public class NavigationSnapshot {
+    public static final NavigationSnapshot EMPTY =
+            new NavigationSnapshot(0, -1, TargetType.NONE, null, Collections.emptyList(), 0);
+
+    private final long generation;
+    private final int tick;
+    private final TargetType targetType;
+    private final Lamp targetLamp;
+    private final List<WorldPoint> path;
+    private final int distance;
+    // Transports the path takes, resolved once when the path is found
+    private final List<Transport> transports;
+
+    public NavigationSnapshot(long generation, int tick, TargetType targetType, Lamp targetLamp,
+            List<WorldPoint> path, int distance) {
+        this(generation, tick, targetType, targetLamp, path, distance, Collections.emptyList());
+    }
+
+    public NavigationSnapshot withGeneration(long newGeneration) {
+        return new NavigationSnapshot(newGeneration, tick, targetType, targetLamp, path, distance, transports);
+    }
+
+    public NavigationSnapshot withTransports(List<Transport> pathTransports) {
+        return new NavigationSnapshot(generation, tick, targetType, targetLamp, path, distance, pathTransports);
+    }
+
+    public boolean isEmpty() {
+        return path.isEmpty();
+    }
+}
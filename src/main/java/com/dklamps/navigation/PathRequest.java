@@ -0,0 +1,37 @@
+package com.dklamps.navigation;
+
+import com.dklamps.enums.TargetType;
+import java.util.Objects;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * The inputs of a single navigation search, captured on the client thread.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PathRequest {
+    private final int tick;
+    private final TargetType targetType;
+    private final WorldPoint playerLocation;
+    private final WorldPoint targetLocation;
+    // Bitmask over Lamp ordinals, see LampStateMask: broken lamps for LAMP, unknown lamps for SCOUT
+    private final long candidateLamps;
+
+    public boolean hasSameInputs(PathRequest other) {
+        return other != null
+                && playerLocation.equals(other.playerLocation)
+                && !isSupersededBy(other);
+    }
+
+    /**
+     * A running search is only worth finishing while it still answers the same question. A newer
+     * request that merely moved the player keeps it useful; a different target does not.
+     */
+    public boolean isSupersededBy(PathRequest newer) {
+        return targetType != newer.targetType
+                || !Objects.equals(targetLocation, newer.targetLocation)
+                || candidateLamps != newer.candidateLamps;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dklamps.navigation;
+
+import com.dklamps.DKLampsHelper;
+import com.dklamps.enums.Transport;
+import com.dklamps.state.SceneObjectIndex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.runelite.api.GameObject;
+import net.runelite.api.WallObject;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * What the overlay highlights along a path: the doors it crosses in path order and the stairs of
+ * the transports it takes. Built once per path and rebuilt only when the path or the spawned doors
+ * and stairs change.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RouteAnnotation {
+    public static final RouteAnnotation EMPTY = new RouteAnnotation(-1, -1, -1,
+            Collections.emptyList(), 0, Collections.emptyList());
+
+    private final long generation;
+    private final int doorsVersion;
+    private final int stairsVersion;
+    private final List<WallObject> doors;
+    // Path index of the first closed door, the path size when there is none
+    private final int firstDoorIndex;
+    private final List<GameObject> stairs;
+
+    public boolean isCurrent(NavigationSnapshot snapshot, SceneObjectIndex<WallObject> doorIndex,
+            SceneObjectIndex<GameObject> stairIndex) {
+        return generation == snapshot.getGeneration()
+                && doorsVersion == doorIndex.getVersion()
+                && stairsVersion == stairIndex.getVersion();
+    }
+
+    public static RouteAnnotation annotate(NavigationSnapshot snapshot, SceneObjectIndex<WallObject> doorIndex,
+            SceneObjectIndex<GameObject> stairIndex) {
+        List<WorldPoint> path = snapshot.getPath();
+        List<WallObject> doors = new ArrayList<>();
+        int firstDoorIndex = path.size();
+        for (int i = 0; i < path.size(); i++) {
+            WallObject door = doorIndex.get(path.get(i));
+            if (door != null && !doors.contains(door)) {
+                if (doors.isEmpty()) {
+                    firstDoorIndex = i;
+                }
+                doors.add(door);
+            }
+        }
+
+        List<GameObject> stairs = new ArrayList<>();
+        for (Transport transport : snapshot.getTransports()) {
+            addStairsBetween(stairIndex, transport, transport.getOrigin().getPlane(), stairs);
+            if (transport.getDestination().getPlane() != transport.getOrigin().getPlane()) {
+                addStairsBetween(stairIndex, transport, transport.getDestination().getPlane(), stairs);
+            }
+        }
+
+        return new RouteAnnotation(snapshot.getGeneration(), doorIndex.getVersion(), stairIndex.getVersion(),
+                doors.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(doors), firstDoorIndex,
+                stairs.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(stairs));
+    }
+
+    private static void addStairsBetween(SceneObjectIndex<GameObject> stairIndex, Transport transport, int plane,
+            List<GameObject> stairs) {
+        for (GameObject stair : stairIndex.getOnPlane(plane)) {
+            if (!stairs.contains(stair) && DKLampsHelper.isLocationBetweenTransportPoints(stair.getWorldLocation(), transport)) {
+                stairs.add(stair);
+            }
+        }
+    }
+}
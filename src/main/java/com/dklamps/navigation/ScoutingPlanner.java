@@ -0,0 +1,137 @@
+package com.dklamps.navigation;
+
+import com.dklamps.DKLampsHelper;
+import com.dklamps.enums.Area;
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.LampSearchMode;
+import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.state.LampStateMask;
+import com.dklamps.stats.BreakModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Picks the area worth entering next when no broken lamp is known. Entering an area reveals its
+ * own lamps and the opposite-area lamps sharing its varbit, so an area scores the unknown lamps it
+ * would resolve per tile walked to reach it. Each unknown lamp counts by its {@link BreakModel}
+ * weight, so areas whose lamps break more often are scouted first.
+ *
+ * <p>The distance to an area is the path to its closest lamp, and the route handed out is that path
+ * cut where it enters the area. Scoring the full path keeps the lower bound used for pruning
+ * admissible: no path to a lamp is shorter than {@link Pathfinder#estimateMinimumPathSize}, while a
+ * path cut at the area boundary can be.
+ */
+@Slf4j
+public class ScoutingPlanner {
+    private final Pathfinder pathfinder;
+    private final ClosestLampSearch lampSearch;
+    private final BreakModel breakModel;
+
+    public ScoutingPlanner(Pathfinder pathfinder, BreakModel breakModel) {
+        this.pathfinder = pathfinder;
+        this.lampSearch = new ClosestLampSearch(pathfinder, null);
+        this.breakModel = breakModel;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Plan {
+        private final Area area;
+        private final int resolvedLamps;
+        private final List<WorldPoint> path;
+    }
+
+    private static final class Candidate {
+        private final Area area;
+        private final int resolvedLamps;
+        private final double resolvedWeight;
+        private final int lowerBound;
+
+        private Candidate(Area area, int resolvedLamps, double resolvedWeight, int lowerBound) {
+            this.area = area;
+            this.resolvedLamps = resolvedLamps;
+            this.resolvedWeight = resolvedWeight;
+            this.lowerBound = lowerBound;
+        }
+
+        private double bestPossibleScore() {
+            return score(resolvedWeight, lowerBound);
+        }
+    }
+
+    /**
+     * @return the best area to scout, or {@code null} when nothing can be learned, no area is
+     *         reachable or the search was aborted.
+     */
+    public Plan plan(WorldPoint start, long unknownLamps, BooleanSupplier aborted) {
+        Area currentArea = DKLampsHelper.getArea(start);
+        List<Candidate> candidates = new ArrayList<>();
+        for (Area area : Area.values()) {
+            long resolved = unknownLamps & LampStateMask.observedMask(area);
+            int resolvedLamps = Long.bitCount(resolved);
+            if (area == currentArea || resolvedLamps == 0) {
+                continue;
+            }
+
+            int lowerBound = Integer.MAX_VALUE;
+            for (long lamps = LampStateMask.areaMask(area); lamps != 0; lamps &= lamps - 1) {
+                Lamp lamp = LampStateMask.lamp(Long.numberOfTrailingZeros(lamps));
+                lowerBound = Math.min(lowerBound, pathfinder.estimateMinimumPathSize(start, lamp.getWorldPoint()));
+            }
+            if (lowerBound != Integer.MAX_VALUE) {
+                candidates.add(new Candidate(area, resolvedLamps, breakModel.getWeight(resolved), lowerBound));
+            }
+        }
+        candidates.sort((a, b) -> Double.compare(b.bestPossibleScore(), a.bestPossibleScore()));
+
+        Plan best = null;
+        double bestScore = 0;
+        for (Candidate candidate : candidates) {
+            if (aborted.getAsBoolean()) {
+                return null;
+            }
+            if (candidate.bestPossibleScore() <= bestScore) {
+                break;
+            }
+
+            ClosestLampSearch.Result entry = lampSearch.find(start, LampStateMask.areaMask(candidate.area),
+                    LampSearchMode.SEQUENTIAL, aborted);
+            if (entry == null) {
+                continue;
+            }
+
+            double score = score(candidate.resolvedWeight, entry.getDistance());
+            if (score > bestScore) {
+                bestScore = score;
+                best = new Plan(candidate.area, candidate.resolvedLamps, cutAtArea(entry.getPath(), candidate.area));
+            }
+        }
+
+        if (aborted.getAsBoolean()) {
+            return null;
+        }
+        if (best != null) {
+            log.debug("Scouting {} to resolve {} lamps in {} tiles", best.getArea(), best.getResolvedLamps(), best.getPath().size());
+        }
+        return best;
+    }
+
+    private static List<WorldPoint> cutAtArea(List<WorldPoint> path, Area area) {
+        for (int i = 0; i < path.size(); i++) {
+            if (DKLampsHelper.getArea(path.get(i)) == area) {
+                return Collections.unmodifiableList(new ArrayList<>(path.subList(0, i + 1)));
+            }
+        }
+        return path;
+    }
+
+    private static double score(double resolvedWeight, int pathSize) {
+        return resolvedWeight / Math.max(1, pathSize);
+    }
+}
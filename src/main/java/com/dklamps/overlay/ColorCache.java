@@ -0,0 +1,65 @@
+package com.dklamps.overlay;
+
+import java.awt.Color;
+
+/**
+ * Colours derived from configured ones (fill alpha, darker shades), cached by source ARGB so the
+ * overlay does not create a {@link Color} per object per frame. Small and open addressed; a full
+ * probe run simply overwrites its first slot.
+ */
+public class ColorCache {
+    private static final int SIZE = 64;
+    private static final int MAX_PROBES = 8;
+    private static final int ALPHA = 1;
+    private static final int DARKER = 2;
+
+    private final long[] keys = new long[SIZE];
+    private final Color[] colors = new Color[SIZE];
+
+    public Color withAlpha(Color color, int alpha) {
+        if (color.getAlpha() == alpha) {
+            return color;
+        }
+
+        long key = key(color, ALPHA, alpha);
+        int slot = find(key);
+        if (colors[slot] == null || keys[slot] != key) {
+            keys[slot] = key;
+            colors[slot] = new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha);
+        }
+        return colors[slot];
+    }
+
+    public Color darker(Color color, int steps) {
+        if (steps <= 0) {
+            return color;
+        }
+
+        long key = key(color, DARKER, steps);
+        int slot = find(key);
+        if (colors[slot] == null || keys[slot] != key) {
+            Color darker = color;
+            for (int i = 0; i < steps; i++) {
+                darker = darker.darker();
+            }
+            keys[slot] = key;
+            colors[slot] = darker;
+        }
+        return colors[slot];
+    }
+
+    private int find(long key) {
+        int start = (int) (key ^ (key >>> 29) ^ (key >>> 41)) & (SIZE - 1);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & (SIZE - 1);
+            if (colors[slot] == null || keys[slot] == key) {
+                return slot;
+            }
+        }
+        return start;
+    }
+
+    private static long key(Color color, int kind, int argument) {
+        return ((long) (kind << 8 | (argument & 0xFF)) << 32) | (color.getRGB() & 0xFFFFFFFFL);
+    }
+}
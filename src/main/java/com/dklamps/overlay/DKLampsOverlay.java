@@ -6,9 +6,7 @@ import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.Shape;
-import java.time.Duration;
-import java.time.Instant;
-import java.util.HashMap;
+import java.awt.geom.Path2D;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -25,11 +23,12 @@ import com.dklamps.enums.LampStatus;
 import com.dklamps.enums.PathDrawStyle;
 import com.dklamps.enums.TargetType;
 import com.dklamps.enums.TimerType;
-import com.dklamps.enums.Transport;
+import com.dklamps.navigation.NavigationSnapshot;
+import com.dklamps.navigation.RouteAnnotation;
+import com.dklamps.state.LampStateMask;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
 import net.runelite.api.GameObject;
-import net.runelite.api.Perspective;
 import net.runelite.api.Point;
 import net.runelite.api.TileObject;
 import net.runelite.api.WallObject;
@@ -50,8 +49,36 @@ public class DKLampsOverlay extends Overlay {
     private final DKLampsConfig config;
     private final ModelOutlineRenderer modelOutlineRenderer;
 
-    private final Map<WorldPoint, WallObject> doorsMap = new HashMap<>();
-    private final Map<WorldPoint, GameObject> stairsMap = new HashMap<>();
+    private static final BasicStroke CENTER_LINE_STROKE = new BasicStroke(2);
+
+    private static final int TILE_FILL_ALPHA = 50;
+    private static final int CLICKBOX_FILL_ALPHA = 50;
+    private static final int CLOSED_DOOR_DARKEN_STEPS = 2;
+    private static final int WIRE_TIMER_DIAMETER = 20;
+
+    // Timer labels for every value the wire timer can show, in ticks and in tenths of a second
+    private static final String[] TICK_LABELS = new String[DKLampsConstants.WIRE_RESPAWN_TICKS + 1];
+    private static final String[] SECOND_LABELS = new String[DKLampsConstants.WIRE_RESPAWN_TICKS * 6 + 1];
+
+    static {
+        for (int i = 0; i < TICK_LABELS.length; i++) {
+            TICK_LABELS[i] = String.valueOf(i);
+        }
+        for (int i = 0; i < SECOND_LABELS.length; i++) {
+            SECOND_LABELS[i] = i / 10 + "." + i % 10;
+        }
+    }
+
+    private final PathProjectionCache pathProjection = new PathProjectionCache();
+    // Path before and after the first closed door, drawn in one call each when batching
+    private final Path2D.Float nearRun = new Path2D.Float();
+    private final Path2D.Float farRun = new Path2D.Float();
+
+    // Objects already drawn in path colours this frame, so the generic highlights skip them
+    private final Set<TileObject> renderedObjects = new HashSet<>();
+    private final ColorCache colors = new ColorCache();
+    private final ProgressPieComponent wireTimerPie = new ProgressPieComponent();
+    private Point mousePosition;
 
     @Inject
     private DKLampsOverlay(Client client, DKLampsPlugin plugin, DKLampsConfig config,
@@ -62,6 +89,7 @@ public class DKLampsOverlay extends Overlay {
         this.modelOutlineRenderer = modelOutlineRenderer;
         setPosition(OverlayPosition.DYNAMIC);
         setLayer(OverlayLayer.ABOVE_SCENE);
+        wireTimerPie.setDiameter(WIRE_TIMER_DIAMETER);
     }
 
     @Override
@@ -70,25 +98,16 @@ public class DKLampsOverlay extends Overlay {
             return null;
         }
 
-        Set<WorldPoint> pathPoints = new HashSet<>(plugin.getNavigationManager().getShortestPath());
-
-        doorsMap.clear();
-        for (WallObject door : plugin.getStateManager().getDoors()) {
-            doorsMap.put(door.getWorldLocation(), door);
-        }
-
-        stairsMap.clear();
-        for (GameObject stair : plugin.getStateManager().getStairs()) {
-            stairsMap.put(stair.getWorldLocation(), stair);
-        }
+        renderedObjects.clear();
+        mousePosition = client.getMouseCanvasPosition();
 
         renderLamps(graphics);
 
-        drawPathToLocation(graphics, pathPoints);
+        drawPathToLocation(graphics);
 
         if (config.highlightClosedDoors()) {
-            for (WallObject door : doorsMap.values()) {
-                if (door.getPlane() != client.getTopLevelWorldView().getPlane()) {
+            for (WallObject door : plugin.getStateManager().getDoors().getOnPlane(client.getTopLevelWorldView().getPlane())) {
+                if (renderedObjects.contains(door)) {
                     continue;
                 }
                 renderTileObject(door, config.doorHighlightColor(), graphics, config.objectsHighlightStyle());
@@ -100,7 +119,7 @@ public class DKLampsOverlay extends Overlay {
                 if (stair.getPlane() != client.getTopLevelWorldView().getPlane()) {
                     continue;
                 }
-                if (!stairsMap.containsValue(stair)) {
+                if (!plugin.getStateManager().getStairs().contains(stair) || renderedObjects.contains(stair)) {
                     continue;
                 }
                 renderTileObject(stair, config.informativeStairColor(), graphics, config.objectsHighlightStyle());
@@ -121,24 +140,31 @@ public class DKLampsOverlay extends Overlay {
     }
 
     private void renderLamps(Graphics2D graphics) {
-        for (GameObject lampObject : plugin.getStateManager().getSpawnedLamps().values()) {
+        for (Map.Entry<WorldPoint, GameObject> spawnedLamp : plugin.getStateManager().getSpawnedLamps().entrySet()) {
+            GameObject lampObject = spawnedLamp.getValue();
             if (lampObject.getPlane() != client.getTopLevelWorldView().getPlane()
                     && !config.highlightOtherPlanesLamps()) {
                 continue;
             }
 
-            Lamp lamp = DKLampsHelper.getLamp(lampObject.getId());
+            // Looked up by the spawn location key, which needs no boxing of the object id
+            Lamp lamp = DKLampsHelper.getLamp(spawnedLamp.getKey());
             if (lamp == null) {
                 continue;
             }
 
-            LampStatus status = plugin.getStateManager().getLampStatuses().getOrDefault(lamp, LampStatus.UNKNOWN);
+            LampStatus status = plugin.getStateManager().getLampState().getStatus(lamp);
 
             Color color;
             if (status == LampStatus.BROKEN && config.highlightBrokenLamps()) {
                 color = config.getBrokenLampColor();
             } else if (status == LampStatus.WORKING && config.highlightWorkingLamps()) {
                 color = config.getWorkingLampColor();
+            } else if (status == LampStatus.UNKNOWN && config.highlightBrokenLamps()
+                    && (plugin.getStateManager().getStaleBrokenLamps() & LampStateMask.bit(lamp)) != 0) {
+                Color brokenColor = config.getBrokenLampColor();
+                color = colors.withAlpha(brokenColor,
+                        DKLampsHelper.staleAlpha(brokenColor, plugin.getStateManager().getStaleConfidence(lamp)));
             } else if (config.highlightAllLamps()) {
                 color = config.getDefaultLampColor();
             } else {
@@ -146,7 +172,7 @@ public class DKLampsOverlay extends Overlay {
             }
 
             if (lampObject.getPlane() != client.getTopLevelWorldView().getPlane() && config.darkenOtherPlanesLamps()) {
-                color = color.darker();
+                color = colors.darker(color, 1);
             }
 
             renderTileObject(lampObject, color, graphics, config.lampsHighlightStyle());
@@ -161,26 +187,26 @@ public class DKLampsOverlay extends Overlay {
             case HIGHLIGHT_CLICKBOX:
                 Shape clickbox = tileObject.getClickbox();
                 if (clickbox != null) {
-                    Point mousePosition = client.getMouseCanvasPosition();
-                    if (clickbox.contains(mousePosition.getX(), mousePosition.getY())) {
-                        graphics.setColor(color.darker());
+                    if (mousePosition != null && clickbox.contains(mousePosition.getX(), mousePosition.getY())) {
+                        graphics.setColor(colors.darker(color, 1));
                     } else {
                         graphics.setColor(color);
                     }
                     graphics.draw(clickbox);
-                    graphics.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 50));
+                    graphics.setColor(colors.withAlpha(color, CLICKBOX_FILL_ALPHA));
                     graphics.fill(clickbox);
                 }
                 break;
         }
     }
 
-    private void drawPathToLocation(Graphics2D graphics, Set<WorldPoint> pathPoints) {
+    private void drawPathToLocation(Graphics2D graphics) {
         if (!config.showPathToLocation()) {
             return;
         }
 
-        List<WorldPoint> path = plugin.getNavigationManager().getShortestPath();
+        NavigationSnapshot snapshot = plugin.getNavigationManager().getSnapshot();
+        List<WorldPoint> path = snapshot.getPath();
         if (path == null || path.isEmpty()) {
             return;
         }
@@ -188,7 +214,7 @@ public class DKLampsOverlay extends Overlay {
         TargetType targetType = plugin.getNavigationManager().getCurrentTargetType();
         boolean isUtilityTarget = targetType == TargetType.BANK || targetType == TargetType.WIRING_MACHINE;
 
-        if (!isUtilityTarget && config.maxPathDistance() > 0 && path.size() > config.maxPathDistance()) {
+        if (targetType == TargetType.LAMP && config.maxPathDistance() > 0 && path.size() > config.maxPathDistance()) {
             return;
         }
 
@@ -197,121 +223,134 @@ public class DKLampsOverlay extends Overlay {
             return;
         }
 
-        Set<Transport> activeTransports = new HashSet<>();
+        RouteAnnotation route = plugin.getNavigationManager().getRouteAnnotation(
+                plugin.getStateManager().getDoors(), plugin.getStateManager().getStairs());
+        int firstDoorIndex = route.getFirstDoorIndex();
         PathDrawStyle style = config.pathDrawStyle();
+        pathProjection.update(client, snapshot.getGeneration(), path, style);
+        Polygon[] polygons = pathProjection.getPolygons();
+        Point[] screenPoints = pathProjection.getPoints();
+        boolean[] inScene = pathProjection.getInScene();
+        Color basePathColor = isUtilityTarget ? config.utilityPathColor() : config.pathColor();
+        Color closedDoorPathColor = colors.darker(basePathColor, CLOSED_DOOR_DARKEN_STEPS);
+        boolean batch = config.batchPathRendering();
+        nearRun.reset();
+        farRun.reset();
         Point prevScreenPoint = null;
-        boolean isAfterClosedDoor = false;
 
-        for (WorldPoint point : path) {
+        for (int i = 0; i < path.size(); i++) {
+            WorldPoint point = path.get(i);
             if (point.getPlane() != client.getTopLevelWorldView().getPlane()) {
                 prevScreenPoint = null;
                 continue;
             }
 
-            LocalPoint localPoint = LocalPoint.fromWorld(client.getTopLevelWorldView(), point);
-            if (localPoint == null) {
-                prevScreenPoint = null;
-                continue;
-            }
-
-            Color pathColor = isUtilityTarget ? config.utilityPathColor() : config.pathColor();
-            if (isAfterClosedDoor) {
-                pathColor = pathColor.darker().darker();
-            }
-
-            switch (style) {
-                case TILES:
-                    Polygon poly = Perspective.getCanvasTilePoly(client, localPoint);
-                    if (poly != null) {
-                        OverlayUtil.renderPolygon(graphics, poly, pathColor);
-                    }
-                    break;
-
-                case TILE_BORDERS:
-                    Polygon borderPoly = Perspective.getCanvasTilePoly(client, localPoint);
-                    if (borderPoly != null) {
-                        graphics.setColor(pathColor);
-                        graphics.draw(borderPoly);
-                    }
-                    break;
-
-                case CENTER_LINE:
-                    Point screenPoint = Perspective.localToCanvas(client, localPoint,
-                            client.getTopLevelWorldView().getPlane());
-                    if (screenPoint == null) {
-                        continue;
+            boolean isAfterClosedDoor = i > firstDoorIndex;
+            Color pathColor = isAfterClosedDoor ? closedDoorPathColor : basePathColor;
+
+            if (batch) {
+                Path2D.Float run = isAfterClosedDoor ? farRun : nearRun;
+                if (style == PathDrawStyle.CENTER_LINE) {
+                    // Tiles outside the scene break the line, tiles merely off screen are bridged
+                    Point screenPoint = screenPoints[i];
+                    if (!inScene[i]) {
+                        prevScreenPoint = null;
+                    } else if (screenPoint != null) {
+                        if (prevScreenPoint != null) {
+                            run.moveTo(prevScreenPoint.getX(), prevScreenPoint.getY());
+                            run.lineTo(screenPoint.getX(), screenPoint.getY());
+                        }
+                        prevScreenPoint = screenPoint;
                     }
-                    if (prevScreenPoint != null) {
-                        graphics.setColor(pathColor);
-                        graphics.setStroke(new BasicStroke(2));
-                        graphics.drawLine(prevScreenPoint.getX(), prevScreenPoint.getY(), screenPoint.getX(),
-                                screenPoint.getY());
-                    }
-                    prevScreenPoint = screenPoint;
-                    break;
-            }
-
-            WallObject door = doorsMap.get(point);
-            if (door != null) {
-                renderTileObject(door, pathColor, graphics, config.objectsHighlightStyle());
-                doorsMap.remove(point);
-                isAfterClosedDoor = true;
-            }
-
-            List<Transport> transports = plugin.getPathfinder().getTransportsAt(point);
-            for (Transport transport : transports) {
-                if (pathPoints.contains(transport.getOrigin()) && pathPoints.contains(transport.getDestination())) {
-                    activeTransports.add(transport);
+                } else if (polygons[i] != null) {
+                    run.append(polygons[i], false);
+                }
+            } else {
+                switch (style) {
+                    case TILES:
+                        if (polygons[i] != null) {
+                            OverlayUtil.renderPolygon(graphics, polygons[i], pathColor);
+                        }
+                        break;
+
+                    case TILE_BORDERS:
+                        if (polygons[i] != null) {
+                            graphics.setColor(pathColor);
+                            graphics.draw(polygons[i]);
+                        }
+                        break;
+
+                    case CENTER_LINE:
+                        Point screenPoint = screenPoints[i];
+                        if (!inScene[i]) {
+                            prevScreenPoint = null;
+                        } else if (screenPoint != null) {
+                            if (prevScreenPoint != null) {
+                                graphics.setColor(pathColor);
+                                graphics.setStroke(CENTER_LINE_STROKE);
+                                graphics.drawLine(prevScreenPoint.getX(), prevScreenPoint.getY(), screenPoint.getX(),
+                                        screenPoint.getY());
+                            }
+                            prevScreenPoint = screenPoint;
+                        }
+                        break;
                 }
             }
         }
 
-        highlightTransportsOnPath(graphics, activeTransports, isUtilityTarget);
-    }
+        if (batch) {
+            drawPathRun(graphics, nearRun, basePathColor, style);
+            drawPathRun(graphics, farRun, closedDoorPathColor, style);
+        }
 
-    private void highlightTransportsOnPath(Graphics2D graphics, Set<Transport> activeTransports,
-            boolean isUtilityTarget) {
+        highlightDoorsOnPath(graphics, route, basePathColor, closedDoorPathColor);
+        highlightTransportsOnPath(graphics, route, basePathColor);
+    }
 
-        if (activeTransports.isEmpty()) {
+    private void drawPathRun(Graphics2D graphics, Path2D.Float run, Color color, PathDrawStyle style) {
+        if (run.getCurrentPoint() == null) {
             return;
         }
 
-        for (GameObject stair : new HashSet<>(stairsMap.values())) {
-            if (stair.getPlane() != client.getTopLevelWorldView().getPlane()) {
-                continue;
-            }
+        graphics.setColor(color);
+        switch (style) {
+            case TILES:
+                // Same look as OverlayUtil.renderPolygon, for all tiles at once
+                graphics.setStroke(CENTER_LINE_STROKE);
+                graphics.draw(run);
+                graphics.setColor(colors.withAlpha(color, TILE_FILL_ALPHA));
+                graphics.fill(run);
+                break;
+            case TILE_BORDERS:
+                graphics.draw(run);
+                break;
+            case CENTER_LINE:
+                graphics.setStroke(CENTER_LINE_STROKE);
+                graphics.draw(run);
+                break;
+        }
+    }
 
-            WorldPoint stairLocation = stair.getWorldLocation();
-            if (isStairBetweenTransportPoints(stairLocation, activeTransports)) {
-                renderTileObject(stair, isUtilityTarget ? config.utilityPathColor() : config.pathColor(), graphics,
-                        config.objectsHighlightStyle());
-                stairsMap.remove(stairLocation);
+    private void highlightDoorsOnPath(Graphics2D graphics, RouteAnnotation route, Color basePathColor,
+            Color closedDoorPathColor) {
+        List<WallObject> doors = route.getDoors();
+        for (int i = 0; i < doors.size(); i++) {
+            WallObject door = doors.get(i);
+            if (door.getPlane() != client.getTopLevelWorldView().getPlane() || !renderedObjects.add(door)) {
+                continue;
             }
+            // The first door is still reachable in the normal path colour, the ones behind it are not
+            renderTileObject(door, i == 0 ? basePathColor : closedDoorPathColor, graphics, config.objectsHighlightStyle());
         }
-
     }
 
-    // private void highlightDoorsOnPath(Graphics2D graphics, Set<WorldPoint> pathPoints, boolean isUtilityTarget) {
-    //     for (WallObject door : plugin.getStateManager().getDoors()) {
-    //         if (door.getPlane() != client.getTopLevelWorldView().getPlane()) {
-    //             continue;
-    //         }
-
-    //         WorldPoint doorLocation = door.getWorldLocation();
-    //         if (pathPoints.contains(doorLocation)) {
-    //             renderTileObject(door, isUtilityTarget ? config.utilityPathColor() : config.pathColor(), graphics,
-    //                     config.objectsHighlightStyle());
-    //         }
-    //     }
-    // }
-
-    private boolean isStairBetweenTransportPoints(WorldPoint objectLocation, Set<Transport> activeTransports) {
-        for (Transport transport : activeTransports) {
-            if (DKLampsHelper.isLocationBetweenTransportPoints(objectLocation, transport)) {
-                return true;
+    private void highlightTransportsOnPath(Graphics2D graphics, RouteAnnotation route, Color pathColor) {
+        for (GameObject stair : route.getStairs()) {
+            if (stair.getPlane() != client.getTopLevelWorldView().getPlane() || !renderedObjects.add(stair)) {
+                continue;
             }
+            renderTileObject(stair, pathColor, graphics, config.objectsHighlightStyle());
         }
-        return false;
     }
 
     private void renderWireTimer(Graphics2D graphics) {
@@ -324,13 +363,11 @@ public class DKLampsOverlay extends Overlay {
         int currentTick = client.getTickCount();
         int ticksRemaining = respawnTick - currentTick;
 
-        Instant now = Instant.now();
-        Instant lastTick = plugin.getLastTickInstant();
-        long millisSinceLastTick = Duration.between(lastTick, now).toMillis();
+        long millisSinceLastTick = System.currentTimeMillis() - plugin.getLastTickInstant().toEpochMilli();
 
-        millisSinceLastTick = Math.max(0, Math.min(millisSinceLastTick, 600));
+        millisSinceLastTick = Math.max(0, Math.min(millisSinceLastTick, DKLampsConstants.GAME_TICK_MILLIS));
 
-        double tickFractionPassed = millisSinceLastTick / 600.0;
+        double tickFractionPassed = millisSinceLastTick / (double) DKLampsConstants.GAME_TICK_MILLIS;
 
         double smoothTicksRemaining = Math.max(0.0, (double) ticksRemaining - tickFractionPassed);
 
@@ -348,22 +385,20 @@ public class DKLampsOverlay extends Overlay {
         }
 
         if (config.timerType() == TimerType.PIE) {
-            ProgressPieComponent pie = new ProgressPieComponent();
-            pie.setPosition(point);
-            pie.setBorderColor(config.wireMachineHighlightColor());
-            pie.setDiameter(20);
-            pie.setFill(config.wireMachineHighlightColor());
+            wireTimerPie.setPosition(point);
+            wireTimerPie.setBorderColor(config.wireMachineHighlightColor());
+            wireTimerPie.setFill(config.wireMachineHighlightColor());
             // Use the smooth progress value
-            pie.setProgress(progress);
-            pie.render(graphics);
+            wireTimerPie.setProgress(progress);
+            wireTimerPie.render(graphics);
         } else if (config.timerType() == TimerType.TICKS) {
             // Ticks should still likely show the discrete value
-            String text = String.valueOf(ticksRemaining);
+            String text = TICK_LABELS[Math.max(0, Math.min(ticksRemaining, TICK_LABELS.length - 1))];
             OverlayUtil.renderTextLocation(graphics, point, text, Color.WHITE);
         } else if (config.timerType() == TimerType.SECONDS) {
-            // Calculate seconds based on the smooth value
-            double seconds = smoothTicksRemaining * 0.6;
-            String text = String.format("%.1f", seconds);
+            // Calculate seconds based on the smooth value, rounded to tenths like "%.1f"
+            int tenths = (int) Math.round(smoothTicksRemaining * 6);
+            String text = SECOND_LABELS[Math.max(0, Math.min(tenths, SECOND_LABELS.length - 1))];
             OverlayUtil.renderTextLocation(graphics, point, text, Color.WHITE);
         }
     }
@@ -0,0 +1,114 @@
+package com.dklamps.overlay;
+
+import com.dklamps.enums.PathDrawStyle;
+import java.awt.Polygon;
+import java.util.List;
+import lombok.Getter;
+import net.runelite.api.Client;
+import net.runelite.api.Perspective;
+import net.runelite.api.Point;
+import net.runelite.api.WorldView;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Screen-space projection of the drawn path. Tiles are only reprojected when the path, the draw
+ * style, the scene base or plane, the camera or the viewport changed since the last frame. The
+ * path is compared by generation and by identity, since generations restart with the plugin.
+ * Entries are {@code null} for tiles that are not on the current plane or not on screen, and
+ * {@link #getInScene()} tells the two apart.
+ */
+public class PathProjectionCache {
+    private long generation = -1;
+    private List<WorldPoint> path;
+    private PathDrawStyle style;
+    private int plane;
+    private int baseX;
+    private int baseY;
+    private int cameraX;
+    private int cameraY;
+    private int cameraZ;
+    private int cameraPitch;
+    private int cameraYaw;
+    private int scale;
+    private int viewportWidth;
+    private int viewportHeight;
+
+    @Getter
+    private int size = 0;
+    @Getter
+    private Polygon[] polygons = new Polygon[0];
+    @Getter
+    private Point[] points = new Point[0];
+    @Getter
+    private boolean[] inScene = new boolean[0];
+
+    /**
+     * @return whether the path had to be reprojected
+     */
+    public boolean update(Client client, long pathGeneration, List<WorldPoint> path, PathDrawStyle drawStyle) {
+        WorldView worldView = client.getTopLevelWorldView();
+        if (pathGeneration == generation
+                && path == this.path
+                && drawStyle == style
+                && worldView.getPlane() == plane
+                && worldView.getBaseX() == baseX
+                && worldView.getBaseY() == baseY
+                && client.getCameraX() == cameraX
+                && client.getCameraY() == cameraY
+                && client.getCameraZ() == cameraZ
+                && client.getCameraPitch() == cameraPitch
+                && client.getCameraYaw() == cameraYaw
+                && client.getScale() == scale
+                && client.getViewportWidth() == viewportWidth
+                && client.getViewportHeight() == viewportHeight) {
+            return false;
+        }
+
+        generation = pathGeneration;
+        this.path = path;
+        style = drawStyle;
+        plane = worldView.getPlane();
+        baseX = worldView.getBaseX();
+        baseY = worldView.getBaseY();
+        cameraX = client.getCameraX();
+        cameraY = client.getCameraY();
+        cameraZ = client.getCameraZ();
+        cameraPitch = client.getCameraPitch();
+        cameraYaw = client.getCameraYaw();
+        scale = client.getScale();
+        viewportWidth = client.getViewportWidth();
+        viewportHeight = client.getViewportHeight();
+
+        size = path.size();
+        if (polygons.length < size) {
+            polygons = new Polygon[size];
+            points = new Point[size];
+            inScene = new boolean[size];
+        }
+
+        for (int i = 0; i < size; i++) {
+            polygons[i] = null;
+            points[i] = null;
+            inScene[i] = false;
+
+            WorldPoint point = path.get(i);
+            if (point.getPlane() != plane) {
+                continue;
+            }
+
+            LocalPoint localPoint = LocalPoint.fromWorld(worldView, point);
+            if (localPoint == null) {
+                continue;
+            }
+            inScene[i] = true;
+
+            if (drawStyle == PathDrawStyle.CENTER_LINE) {
+                points[i] = Perspective.localToCanvas(client, localPoint, plane);
+            } else {
+                polygons[i] = Perspective.getCanvasTilePoly(client, localPoint);
+            }
+        }
+        return true;
+    }
+}
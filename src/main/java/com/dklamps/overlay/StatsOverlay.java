@@ -1,10 +1,15 @@
 package com.dklamps.overlay;
 
 import com.dklamps.DKLampsConfig;
+import com.dklamps.DKLampsConstants;
 import com.dklamps.DKLampsHelper;
 import com.dklamps.DKLampsPlugin;
 import com.dklamps.enums.Area;
+import com.dklamps.enums.RateWindow;
 import com.dklamps.enums.TargetType;
+import com.dklamps.pathfinder.LogHistogram;
+import com.dklamps.pathfinder.PathfinderMetrics;
+import com.dklamps.stats.LegTimer;
 
 import java.awt.Color;
 import java.awt.Dimension;
@@ -23,6 +28,17 @@ public class StatsOverlay extends OverlayPanel
     private final DKLampsConfig config;
     private final Client client;
 
+    // Percentiles walk every histogram bucket, so the metrics are summarized once per game tick
+    private int metricsTick = -1;
+    private String metricsQueries;
+    private String metricsLatency;
+    private String metricsExpanded;
+    private String metricsOpenSet;
+    private String metricsCapHits;
+    private Color metricsCapHitsColor;
+    private String metricsUnreachable;
+    private String metricsRouteCache;
+
     @Inject
     private StatsOverlay(DKLampsPlugin plugin, DKLampsConfig config, Client client)
     {
@@ -97,6 +113,49 @@ public class StatsOverlay extends OverlayPanel
                     .left("Lamps/hr:")
                     .right(Integer.toString(lampsPerHr))
                     .build());
+
+                RateWindow window = config.rateWindow();
+                panelComponent.getChildren().add(LineComponent.builder()
+                    .left("Last " + window.getDisplayName() + ":")
+                    .right(plugin.getStatsTracker().getRollingLampsPerHr(window.getMillis()) + "/hr")
+                    .build());
+            }
+
+            long medianMillis = plugin.getStatsTracker().getMedianMillisBetweenFixes();
+            if (medianMillis >= 0)
+            {
+                panelComponent.getChildren().add(LineComponent.builder()
+                    .left("Median fix:")
+                    .right(DKLampsHelper.formatDuration(medianMillis))
+                    .build());
+            }
+
+            boolean idle = plugin.getStatsTracker().isIdle();
+            panelComponent.getChildren().add(LineComponent.builder()
+                .left("Session:")
+                .right(DKLampsHelper.formatDuration(plugin.getStatsTracker().getSessionActiveMillis()) + (idle ? " (idle)" : ""))
+                .rightColor(idle ? Color.GRAY : Color.WHITE)
+                .build());
+        }
+
+        if (config.showLegBreakdown())
+        {
+            LegTimer legs = plugin.getStatsTracker().getLegs();
+            panelComponent.getChildren().add(TitleComponent.builder()
+                .text("Time per leg")
+                .build());
+            for (TargetType type : TargetType.values())
+            {
+                long ticks = legs.getTotalTicks(type);
+                if (ticks == 0)
+                {
+                    continue;
+                }
+                panelComponent.getChildren().add(LineComponent.builder()
+                    .left(type.getDisplayName() + " (" + legs.getLegCount(type) + "):")
+                    .right(DKLampsHelper.formatDuration(ticks * DKLampsConstants.GAME_TICK_MILLIS))
+                    .rightColor(type == legs.getCurrentType() ? config.pathColor() : Color.WHITE)
+                    .build());
             }
         }
 
@@ -105,6 +164,82 @@ public class StatsOverlay extends OverlayPanel
             .right(String.valueOf(plugin.getStatsTracker().getTotalLampsFixed()))
             .build());
 
+        if (config.showPathfinderMetrics() && plugin.getPathfinder() != null)
+        {
+            renderPathfinderMetrics(plugin.getPathfinder().getMetrics());
+        }
+
         return super.render(graphics);
     }
+
+    private void renderPathfinderMetrics(PathfinderMetrics metrics)
+    {
+        if (client.getTickCount() != metricsTick)
+        {
+            metricsTick = client.getTickCount();
+            summarizePathfinderMetrics(metrics);
+        }
+
+        panelComponent.getChildren().add(TitleComponent.builder()
+            .text("Pathfinder")
+            .build());
+        panelComponent.getChildren().add(LineComponent.builder()
+            .left("Queries:")
+            .right(metricsQueries)
+            .build());
+        panelComponent.getChildren().add(LineComponent.builder()
+            .left("p50/p99/max:")
+            .right(metricsLatency)
+            .build());
+        panelComponent.getChildren().add(LineComponent.builder()
+            .left("Expanded p50/p99:")
+            .right(metricsExpanded)
+            .build());
+        panelComponent.getChildren().add(LineComponent.builder()
+            .left("Open set p99:")
+            .right(metricsOpenSet)
+            .build());
+        panelComponent.getChildren().add(LineComponent.builder()
+            .left("Iteration cap:")
+            .right(metricsCapHits)
+            .rightColor(metricsCapHitsColor)
+            .build());
+        panelComponent.getChildren().add(LineComponent.builder()
+            .left("Unreachable:")
+            .right(metricsUnreachable)
+            .build());
+        panelComponent.getChildren().add(LineComponent.builder()
+            .left("Route cache:")
+            .right(metricsRouteCache)
+            .build());
+    }
+
+    private void summarizePathfinderMetrics(PathfinderMetrics metrics)
+    {
+        metricsQueries = Long.toString(metrics.getQueries());
+
+        LogHistogram latency = metrics.getLatencyNanos();
+        metricsLatency = formatMillis(latency.getValueAtPercentile(50)) + " / " + formatMillis(latency.getValueAtPercentile(99))
+            + " / " + formatMillis(latency.getMax()) + " ms";
+
+        LogHistogram expanded = metrics.getExpandedNodes();
+        metricsExpanded = expanded.getValueAtPercentile(50) + " / " + expanded.getValueAtPercentile(99);
+        metricsOpenSet = Long.toString(metrics.getOpenSetPeak().getValueAtPercentile(99));
+
+        long capHits = metrics.getOutcomeCount(PathfinderMetrics.Outcome.ITERATION_CAP);
+        metricsCapHits = Long.toString(capHits);
+        metricsCapHitsColor = capHits > 0 ? Color.ORANGE : Color.WHITE;
+        metricsUnreachable = Long.toString(metrics.getOutcomeCount(PathfinderMetrics.Outcome.TOO_FAR)
+            + metrics.getOutcomeCount(PathfinderMetrics.Outcome.NO_STANDING_TILE)
+            + metrics.getOutcomeCount(PathfinderMetrics.Outcome.EXHAUSTED));
+
+        long hits = metrics.getRouteCacheHits();
+        long lookups = hits + metrics.getRouteCacheMisses();
+        metricsRouteCache = lookups == 0 ? "-" : hits + "/" + lookups + " (" + hits * 100 / lookups + "%)";
+    }
+
+    private static String formatMillis(long nanos)
+    {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
 }
\ No newline at end of file
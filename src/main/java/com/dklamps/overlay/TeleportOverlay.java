@@ -38,7 +38,7 @@ public class TeleportOverlay extends WidgetItemOverlay
 
         List<WorldPoint> path = plugin.getNavigationManager().getShortestPath();
 
-        if (path != null && (path.size() > config.maxPathDistance() || plugin.getStateManager().getBrokenLamps().isEmpty())
+        if (path != null && (path.size() > config.maxPathDistance() || plugin.getStateManager().getBrokenLamps() == 0)
                 && plugin.getNavigationManager().getCurrentTargetType() == TargetType.LAMP)
         {
             Rectangle bounds = itemWidget.getCanvasBounds();
@@ -1,6 +1,9 @@
 package com.dklamps.panel;
 
+import java.awt.BorderLayout;
 import java.awt.GridLayout;
+import javax.swing.JPanel;
+import javax.swing.JTabbedPane;
 import javax.swing.border.EmptyBorder;
 
 import com.dklamps.DKLampsPlugin;
@@ -11,24 +14,33 @@ public class DKLampsPanel extends PluginPanel {
     private final MapPanel floor0;
     private final MapPanel floor1;
     private final MapPanel floor2;
+    private final LegStatsPanel legStats;
 
     public DKLampsPanel(DKLampsPlugin plugin) {
         super(false);
         setBorder(new EmptyBorder(5, 10, 5, 10));
-        setLayout(new GridLayout(0, 1, 0, 5));
+        setLayout(new BorderLayout());
 
         floor2 = new MapPanel(plugin, 2, "Second Floor");
         floor1 = new MapPanel(plugin, 1, "First Floor");
         floor0 = new MapPanel(plugin, 0, "Ground Floor");
+        legStats = new LegStatsPanel(plugin);
 
-        add(floor2);
-        add(floor1);
-        add(floor0);
+        JPanel maps = new JPanel(new GridLayout(0, 1, 0, 5));
+        maps.add(floor2);
+        maps.add(floor1);
+        maps.add(floor0);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Map", maps);
+        tabs.addTab("Legs", legStats);
+        add(tabs, BorderLayout.CENTER);
     }
 
     public void update() {
         floor2.update();
         floor1.update();
         floor0.update();
+        legStats.update();
     }
-}
\ No newline at end of file
+}
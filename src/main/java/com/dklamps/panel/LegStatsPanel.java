@@ -0,0 +1,87 @@
+package com.dklamps.panel;
+
+import java.awt.BorderLayout;
+import java.awt.GridLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.border.EmptyBorder;
+
+import com.dklamps.DKLampsConstants;
+import com.dklamps.DKLampsHelper;
+import com.dklamps.DKLampsPlugin;
+import com.dklamps.enums.TargetType;
+import com.dklamps.stats.LegTimer;
+
+/**
+ * Time spent per leg type this session: number of legs, total time and median leg length.
+ */
+public class LegStatsPanel extends JPanel {
+    private static final TargetType[] LEG_TYPES = TargetType.values();
+
+    private final DKLampsPlugin plugin;
+    private final JLabel[] counts = new JLabel[LEG_TYPES.length];
+    private final JLabel[] totals = new JLabel[LEG_TYPES.length];
+    private final JLabel[] medians = new JLabel[LEG_TYPES.length];
+    private int shownVersion = -1;
+    private TargetType shownType = null;
+    private long shownCurrentTicks = -1;
+
+    LegStatsPanel(DKLampsPlugin plugin) {
+        this.plugin = plugin;
+        setLayout(new BorderLayout());
+        setBorder(new EmptyBorder(5, 0, 5, 0));
+
+        JPanel table = new JPanel(new GridLayout(0, 4, 5, 3));
+        table.add(new JLabel("Leg"));
+        table.add(new JLabel("Legs"));
+        table.add(new JLabel("Total"));
+        table.add(new JLabel("Median"));
+        for (TargetType type : LEG_TYPES) {
+            counts[type.ordinal()] = new JLabel("0");
+            totals[type.ordinal()] = new JLabel("-");
+            medians[type.ordinal()] = new JLabel("-");
+            table.add(new JLabel(type.getDisplayName()));
+            table.add(counts[type.ordinal()]);
+            table.add(totals[type.ordinal()]);
+            table.add(medians[type.ordinal()]);
+        }
+        add(table, BorderLayout.NORTH);
+    }
+
+    /**
+     * Called on the client thread; the labels are only rewritten when a leg finished or the
+     * running leg's time changed.
+     */
+    public void update() {
+        LegTimer legs = plugin.getStatsTracker().getLegs();
+        TargetType currentType = legs.getCurrentType();
+        long currentTicks = legs.getCurrentLegTicks();
+        if (legs.getVersion() == shownVersion && currentType == shownType && currentTicks == shownCurrentTicks) {
+            return;
+        }
+        shownVersion = legs.getVersion();
+        shownType = currentType;
+        shownCurrentTicks = currentTicks;
+
+        String[] countTexts = new String[LEG_TYPES.length];
+        String[] totalTexts = new String[LEG_TYPES.length];
+        String[] medianTexts = new String[LEG_TYPES.length];
+        for (TargetType type : LEG_TYPES) {
+            int i = type.ordinal();
+            long totalTicks = legs.getTotalTicks(type);
+            int medianTicks = legs.getMedianTicks(type);
+            countTexts[i] = Integer.toString(legs.getLegCount(type));
+            totalTexts[i] = totalTicks == 0 ? "-" : DKLampsHelper.formatDuration(totalTicks * DKLampsConstants.GAME_TICK_MILLIS);
+            medianTexts[i] = medianTicks < 0 ? "-" : DKLampsHelper.formatDuration((long) medianTicks * DKLampsConstants.GAME_TICK_MILLIS);
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            for (int i = 0; i < LEG_TYPES.length; i++) {
+                counts[i].setText(countTexts[i]);
+                totals[i].setText(totalTexts[i]);
+                medians[i].setText(medianTexts[i]);
+            }
+        });
+    }
+}
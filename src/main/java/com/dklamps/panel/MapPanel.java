@@ -1,6 +1,7 @@
 package com.dklamps.panel;
 
 import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -8,25 +9,37 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import javax.swing.JPanel;
 
 import com.dklamps.DKLampsConstants;
+import com.dklamps.DKLampsHelper;
 import com.dklamps.DKLampsPlugin;
 import com.dklamps.enums.DisplayFloorType;
 import com.dklamps.enums.Lamp;
 import com.dklamps.enums.LampStatus;
+import com.dklamps.enums.TargetType;
+import com.dklamps.navigation.NavigationSnapshot;
+import com.dklamps.state.LampStateMask;
 
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.coords.WorldPoint;
 import net.runelite.client.util.ImageUtil;
 
 @Slf4j
 public class MapPanel extends JPanel {
+    private static final Color OTHER_FLOOR_SHADE = new Color(0, 0, 0, 50);
+
+    private static final int ROUTE_HOP_SIZE = 6;
+    private static final int ROUTE_TARGET_RADIUS = 7;
+    private static final BasicStroke ROUTE_STROKE = new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
 
     private final DKLampsPlugin plugin;
     private final int plane;
@@ -34,6 +47,68 @@ public class MapPanel extends JPanel {
     private final String title;
     private final List<Lamp> lampsOnThisFloor;
     private final BufferedImage mapImage;
+    private final MapDisplay mapDisplay;
+
+    // Captured on the client thread by update() and only read when painting on the EDT
+    private volatile FloorState state = FloorState.EMPTY;
+    // Rebuilt on the client thread only when the navigation snapshot generation or colour changes
+    private RouteShape route = RouteShape.EMPTY;
+
+    /**
+     * The part of the route on this floor in map-relative coordinates (0 to 1), so painting only
+     * has to scale it. Runs of the polyline are separated by a {@code NaN} pair where the route
+     * leaves the floor or the map.
+     */
+    @RequiredArgsConstructor
+    private static class RouteShape {
+        private static final RouteShape EMPTY = new RouteShape(-1, null, new float[0], new float[0], null);
+
+        private final long generation;
+        private final Color color;
+        private final float[] points;
+        // Where the route changes floor, as x, y pairs
+        private final float[] hops;
+        // The route's last tile when it is on this floor
+        private final float[] target;
+    }
+
+    /**
+     * Everything a floor paints besides the map itself. Painting only happens when this changes.
+     */
+    @RequiredArgsConstructor
+    private static class FloorState {
+        private static final FloorState EMPTY = new FloorState(new Color[0], false, false, null, 0f, RouteShape.EMPTY);
+
+        private final Color[] lampColors;
+        private final boolean loggedIn;
+        private final boolean currentFloor;
+        // Null when the player dot is not shown on this floor
+        private final WorldPoint playerLocation;
+        private final float playerOpacity;
+        private final RouteShape route;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FloorState)) {
+                return false;
+            }
+            FloorState other = (FloorState) o;
+            return loggedIn == other.loggedIn
+                    && currentFloor == other.currentFloor
+                    && Float.compare(playerOpacity, other.playerOpacity) == 0
+                    && route == other.route
+                    && Objects.equals(playerLocation, other.playerLocation)
+                    && Arrays.equals(lampColors, other.lampColors);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(loggedIn, currentFloor, playerLocation, playerOpacity) * 31 + Arrays.hashCode(lampColors);
+        }
+    }
 
     MapPanel(DKLampsPlugin plugin, int plane, String title) {
         this.plugin = plugin;
@@ -43,7 +118,7 @@ public class MapPanel extends JPanel {
 
         setLayout(new BorderLayout());
 
-        JPanel mapDisplay = new MapDisplay();
+        mapDisplay = new MapDisplay();
         add(mapDisplay, BorderLayout.CENTER);
 
         this.lampsOnThisFloor = Arrays.stream(Lamp.values())
@@ -51,11 +126,138 @@ public class MapPanel extends JPanel {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Called every game tick on the client thread; repaints only when a lamp colour or the
+     * player's tile changed.
+     */
     public void update() {
-        this.repaint();
+        FloorState next = captureState();
+        if (!next.equals(state)) {
+            state = next;
+            mapDisplay.repaint();
+        }
+    }
+
+    private FloorState captureState() {
+        LampStateMask lampState = plugin.getStateManager().getLampState();
+        long staleBrokenLamps = plugin.getStateManager().getStaleBrokenLamps();
+        Color[] lampColors = new Color[lampsOnThisFloor.size()];
+        for (int i = 0; i < lampColors.length; i++) {
+            Lamp lamp = lampsOnThisFloor.get(i);
+            LampStatus status = lampState.getStatus(lamp);
+
+            Color color;
+            if (status == LampStatus.BROKEN) {
+                color = plugin.getConfig().getBrokenLampColor();
+            } else if (status == LampStatus.WORKING &&
+                    ((plugin.getConfig().displayWorkingLampsInPanel() == DisplayFloorType.ALL_FLOORS)
+                            || (plugin.getConfig().displayWorkingLampsInPanel() == DisplayFloorType.CURRENT_FLOOR
+                                    && lamp.getWorldPoint().getPlane() == plane))) {
+                color = plugin.getConfig().getWorkingLampColor();
+            } else if ((staleBrokenLamps & LampStateMask.bit(lamp)) != 0) {
+                color = DKLampsHelper.staleColor(plugin.getConfig().getBrokenLampColor(),
+                        plugin.getStateManager().getStaleConfidence(lamp));
+            } else {
+                color = plugin.getConfig().getDefaultLampColor();
+            }
+            lampColors[i] = color;
+        }
+
+        if (plugin.getClient().getLocalPlayer() == null) {
+            return new FloorState(lampColors, false, false, null, 0f, RouteShape.EMPTY);
+        }
+
+        WorldPoint playerLocation = plugin.getClient().getLocalPlayer().getWorldLocation();
+        boolean currentFloor = playerLocation.getPlane() == plane;
+        float playerOpacity;
+        if (plugin.getConfig().displayPlayerInPanel() == DisplayFloorType.NONE
+                || (plugin.getConfig().displayPlayerInPanel() == DisplayFloorType.CURRENT_FLOOR && !currentFloor)) {
+            playerOpacity = 0f;
+        } else {
+            playerOpacity = currentFloor ? 1.0f : plugin.getConfig().playerOpacityOtherFloors() * 0.01f;
+        }
+        DisplayFloorType routeDisplay = plugin.getConfig().displayRouteInPanel();
+        boolean showRoute = routeDisplay == DisplayFloorType.ALL_FLOORS
+                || (routeDisplay == DisplayFloorType.CURRENT_FLOOR && currentFloor);
+        return new FloorState(lampColors, true, currentFloor, playerOpacity > 0f ? playerLocation : null, playerOpacity,
+                showRoute ? captureRoute() : RouteShape.EMPTY);
+    }
+
+    private RouteShape captureRoute() {
+        NavigationSnapshot snapshot = plugin.getNavigationManager().getSnapshot();
+        TargetType targetType = snapshot.getTargetType();
+        boolean utility = targetType == TargetType.BANK || targetType == TargetType.WIRING_MACHINE;
+        Color color = utility ? plugin.getConfig().utilityPathColor() : plugin.getConfig().pathColor();
+        if (snapshot.getGeneration() == route.generation && color.equals(route.color)) {
+            return route;
+        }
+
+        List<WorldPoint> path = snapshot.getPath();
+        float[] points = new float[path.size() * 4];
+        float[] hops = new float[8];
+        int pointCount = 0;
+        int hopCount = 0;
+        boolean inRun = false;
+        for (int i = 0; i < path.size(); i++) {
+            WorldPoint point = path.get(i);
+            boolean onMap = point.getPlane() == plane && isOnMap(point);
+            if (onMap) {
+                points[pointCount++] = relativeX(point);
+                points[pointCount++] = relativeY(point);
+            } else if (inRun) {
+                points[pointCount++] = Float.NaN;
+                points[pointCount++] = Float.NaN;
+            }
+            inRun = onMap;
+
+            // Mark both ends of a floor change that touch this floor
+            WorldPoint previous = i > 0 ? path.get(i - 1) : null;
+            WorldPoint next = i + 1 < path.size() ? path.get(i + 1) : null;
+            boolean hop = (previous != null && previous.getPlane() != point.getPlane())
+                    || (next != null && next.getPlane() != point.getPlane());
+            if (hop && onMap) {
+                if (hopCount == hops.length) {
+                    hops = Arrays.copyOf(hops, hops.length * 2);
+                }
+                hops[hopCount++] = relativeX(point);
+                hops[hopCount++] = relativeY(point);
+            }
+        }
+
+        float[] target = null;
+        WorldPoint last = path.isEmpty() ? null : path.get(path.size() - 1);
+        if (targetType != TargetType.NONE && last != null && last.getPlane() == plane && isOnMap(last)) {
+            target = new float[]{relativeX(last), relativeY(last)};
+        }
+
+        route = new RouteShape(snapshot.getGeneration(), color, Arrays.copyOf(points, pointCount),
+                Arrays.copyOf(hops, hopCount), target);
+        return route;
+    }
+
+    private static boolean isOnMap(WorldPoint point) {
+        return point.getX() >= DKLampsConstants.MAP_NORTH_WEST_CORNER.getX() && point.getX() <= DKLampsConstants.MAP_SOUTH_EAST_CORNER.getX()
+                && point.getY() <= DKLampsConstants.MAP_NORTH_WEST_CORNER.getY() && point.getY() >= DKLampsConstants.MAP_SOUTH_EAST_CORNER.getY();
+    }
+
+    private static float relativeX(WorldPoint point) {
+        double mapWidthInTiles = (DKLampsConstants.MAP_SOUTH_EAST_CORNER.getX() - DKLampsConstants.MAP_NORTH_WEST_CORNER.getX()) + 1;
+        return (float) ((point.getX() - DKLampsConstants.MAP_NORTH_WEST_CORNER.getX() + 0.5) / mapWidthInTiles);
+    }
+
+    private static float relativeY(WorldPoint point) {
+        double mapHeightInTiles = (DKLampsConstants.MAP_NORTH_WEST_CORNER.getY() - DKLampsConstants.MAP_SOUTH_EAST_CORNER.getY()) + 1;
+        return (float) ((DKLampsConstants.MAP_NORTH_WEST_CORNER.getY() - point.getY() + 0.5) / mapHeightInTiles);
     }
 
     private class MapDisplay extends JPanel {
+        // The map scaled to the current size, and the lamp circles of the state they were drawn for
+        private BufferedImage background;
+        private BufferedImage lampLayer;
+        private Color[] lampLayerColors;
+        private BufferedImage routeLayer;
+        private RouteShape routeLayerRoute;
+
         MapDisplay() {}
 
         @Override
@@ -79,54 +281,128 @@ public class MapPanel extends JPanel {
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
 
-            if (mapImage == null)
+            if (mapImage == null || getWidth() <= 0 || getHeight() <= 0)
                 return;
-            g.drawImage(mapImage, 0, 0, getWidth(), getHeight(), null);
+
+            FloorState floorState = state;
+            g.drawImage(getBackgroundImage(), 0, 0, null);
 
             Graphics2D g2d = (Graphics2D) g;
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-            if (plugin.getClient().getLocalPlayer() != null &&
-                    plugin.getClient().getLocalPlayer().getWorldLocation().getPlane() != plane) {
-                g2d.setColor(new Color(0, 0, 0, 50));
+            if (floorState.loggedIn && !floorState.currentFloor) {
+                g2d.setColor(OTHER_FLOOR_SHADE);
                 g2d.fillRect(0, 0, getWidth(), getHeight());
             }
 
-            if (plugin.getClient().getLocalPlayer() != null &&
-                    plugin.getClient().getLocalPlayer().getWorldLocation().getPlane() == plane) {
+            if (floorState.loggedIn && floorState.currentFloor) {
                 g.setColor(Color.WHITE);
                 g.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
             }
 
-            for (Lamp lamp : lampsOnThisFloor) {
-                LampStatus status = plugin.getStateManager().getLampStatuses().getOrDefault(lamp, LampStatus.UNKNOWN);
+            if (floorState.route.points.length > 0 || floorState.route.target != null) {
+                g.drawImage(getRouteLayer(floorState.route), 0, 0, null);
+            }
+            g.drawImage(getLampLayer(floorState.lampColors), 0, 0, null);
+
+            if (floorState.playerLocation != null) {
+                drawPlayerDot(g2d, floorState.playerLocation, floorState.playerOpacity);
+            }
+        }
+
+        private BufferedImage getBackgroundImage() {
+            if (background == null || background.getWidth() != getWidth() || background.getHeight() != getHeight()) {
+                background = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = background.createGraphics();
+                g.drawImage(mapImage, 0, 0, getWidth(), getHeight(), null);
+                g.dispose();
+            }
+            return background;
+        }
+
+        private BufferedImage getRouteLayer(RouteShape routeShape) {
+            if (routeLayer != null && routeLayer.getWidth() == getWidth() && routeLayer.getHeight() == getHeight()
+                    && routeShape == routeLayerRoute) {
+                return routeLayer;
+            }
 
-                Color color;
-                if (status == LampStatus.BROKEN) {
-                    color = plugin.getConfig().getBrokenLampColor();
-                } else if (status == LampStatus.WORKING &&
-                        ((plugin.getConfig().displayWorkingLampsInPanel() == DisplayFloorType.ALL_FLOORS)
-                                || (plugin.getConfig().displayWorkingLampsInPanel() == DisplayFloorType.CURRENT_FLOOR
-                                        && lamp.getWorldPoint().getPlane() == plane))) {
-                    color = plugin.getConfig().getWorkingLampColor();
+            if (routeLayer == null || routeLayer.getWidth() != getWidth() || routeLayer.getHeight() != getHeight()) {
+                routeLayer = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+            }
+            routeLayerRoute = routeShape;
+
+            Graphics2D g2d = routeLayer.createGraphics();
+            g2d.setComposite(AlphaComposite.Clear);
+            g2d.fillRect(0, 0, getWidth(), getHeight());
+            g2d.setComposite(AlphaComposite.SrcOver);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setColor(routeShape.color);
+            g2d.setStroke(ROUTE_STROKE);
+
+            Path2D.Float polyline = new Path2D.Float();
+            boolean inRun = false;
+            for (int i = 0; i < routeShape.points.length; i += 2) {
+                float x = routeShape.points[i];
+                if (Float.isNaN(x)) {
+                    inRun = false;
+                    continue;
+                }
+                float y = routeShape.points[i + 1];
+                if (inRun) {
+                    polyline.lineTo(x * getWidth(), y * getHeight());
                 } else {
-                    color = plugin.getConfig().getDefaultLampColor();
+                    polyline.moveTo(x * getWidth(), y * getHeight());
+                    inRun = true;
                 }
+            }
+            g2d.draw(polyline);
 
-                g2d.setColor(color);
-                Ellipse2D.Double circle = getLampCircle(lamp);
+            for (int i = 0; i < routeShape.hops.length; i += 2) {
+                int x = (int) (routeShape.hops[i] * getWidth());
+                int y = (int) (routeShape.hops[i + 1] * getHeight());
+                g2d.setColor(Color.WHITE);
+                g2d.fillRect(x - ROUTE_HOP_SIZE / 2, y - ROUTE_HOP_SIZE / 2, ROUTE_HOP_SIZE, ROUTE_HOP_SIZE);
+                g2d.setColor(routeShape.color);
+                g2d.drawRect(x - ROUTE_HOP_SIZE / 2, y - ROUTE_HOP_SIZE / 2, ROUTE_HOP_SIZE, ROUTE_HOP_SIZE);
+            }
+
+            if (routeShape.target != null) {
+                int x = (int) (routeShape.target[0] * getWidth());
+                int y = (int) (routeShape.target[1] * getHeight());
+                g2d.setColor(routeShape.color);
+                g2d.drawOval(x - ROUTE_TARGET_RADIUS, y - ROUTE_TARGET_RADIUS, ROUTE_TARGET_RADIUS * 2, ROUTE_TARGET_RADIUS * 2);
+            }
+            g2d.dispose();
+            return routeLayer;
+        }
+
+        private BufferedImage getLampLayer(Color[] lampColors) {
+            if (lampLayer != null && lampLayer.getWidth() == getWidth() && lampLayer.getHeight() == getHeight()
+                    && Arrays.equals(lampColors, lampLayerColors)) {
+                return lampLayer;
+            }
+
+            if (lampLayer == null || lampLayer.getWidth() != getWidth() || lampLayer.getHeight() != getHeight()) {
+                lampLayer = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+            }
+            lampLayerColors = lampColors;
+
+            Graphics2D g2d = lampLayer.createGraphics();
+            g2d.setComposite(AlphaComposite.Clear);
+            g2d.fillRect(0, 0, getWidth(), getHeight());
+            g2d.setComposite(AlphaComposite.SrcOver);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            for (int i = 0; i < lampColors.length; i++) {
+                Ellipse2D.Double circle = getLampCircle(lampsOnThisFloor.get(i));
                 if (circle != null) {
+                    g2d.setColor(lampColors[i]);
                     g2d.fill(circle);
                     g2d.setColor(Color.BLACK);
                     g2d.draw(circle);
                 }
             }
-
-            if (plugin.getClient().getLocalPlayer() != null &&
-                    plugin.getConfig().displayPlayerInPanel() != DisplayFloorType.NONE) {
-                WorldPoint playerLocation = plugin.getClient().getLocalPlayer().getWorldLocation();
-                drawPlayerDot(g2d, playerLocation);
-            }
+            g2d.dispose();
+            return lampLayer;
         }
 
         private Ellipse2D.Double getLampCircle(Lamp lamp) {
@@ -151,17 +427,7 @@ public class MapPanel extends JPanel {
             return new Ellipse2D.Double(panelX - radius, panelY - radius, radius * 2, radius * 2);
         }
 
-        private void drawPlayerDot(Graphics2D g2d, WorldPoint playerLocation) {
-            if (plugin.getConfig().displayPlayerInPanel() == DisplayFloorType.CURRENT_FLOOR &&
-                    playerLocation.getPlane() != plane) {
-                return;
-            }
-
-            float opacity = plugin.getConfig().playerOpacityOtherFloors() * 0.01f;
-            if (playerLocation.getPlane() == plane) {
-                opacity = 1.0f;
-            }
-
+        private void drawPlayerDot(Graphics2D g2d, WorldPoint playerLocation, float opacity) {
             g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
             g2d.setColor(Color.WHITE);
 
@@ -5,20 +5,29 @@ import com.dklamps.enums.Direction;
 import com.dklamps.enums.Lamp;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.coords.WorldPoint;
 
+@Slf4j
 public class Pathfinder {
     private static final int MAX_ITERATIONS = 10000; // Reasonable limit to prevent hangs
     private static final int MAX_PATH_LENGTH = 512; // Reasonable path length limit
+    private static final int ABORT_CHECK_INTERVAL = 64;
+    private static final BooleanSupplier NEVER_ABORT = () -> false;
 
     private final CollisionMap collisionMap;
     private final Map<WorldPoint, List<Transport>> transports;
+    @Getter
+    private final PathfinderMetrics metrics = new PathfinderMetrics();
 
     public Pathfinder() throws IOException {
         SplitFlagMap map = SplitFlagMap.loadFromResources();
@@ -31,7 +40,15 @@ public class Pathfinder {
     }
 
     public List<WorldPoint> findPath(WorldPoint start, WorldPoint end) {
-        return findPathInternal(start, end, MAX_ITERATIONS);
+        return findPathInternal(start, end, MAX_ITERATIONS, NEVER_ABORT);
+    }
+
+    /**
+     * Same as {@link #findPath(WorldPoint, WorldPoint)}, but polls {@code aborted} while searching
+     * and gives up with an empty path once it returns true.
+     */
+    public List<WorldPoint> findPath(WorldPoint start, WorldPoint end, BooleanSupplier aborted) {
+        return findPathInternal(start, end, MAX_ITERATIONS, aborted);
     }
     
     public boolean isTransportLocation(WorldPoint point) {
@@ -39,15 +56,85 @@ public class Pathfinder {
     }
     
     public List<Transport> getTransportsAt(WorldPoint point) {
-        return transports.getOrDefault(point, new ArrayList<>());
+        return transports.getOrDefault(point, Collections.emptyList());
+    }
+
+    /**
+     * Transports the path takes: both their origin and their destination are on it.
+     */
+    public List<Transport> getTransportsOnPath(List<WorldPoint> path) {
+        Set<Integer> pathTiles = new HashSet<>(path.size() * 2);
+        for (WorldPoint point : path) {
+            pathTiles.add(WorldPointUtil.packWorldPoint(point));
+        }
+
+        List<Transport> onPath = new ArrayList<>();
+        for (WorldPoint point : path) {
+            for (Transport transport : transports.getOrDefault(point, Collections.emptyList())) {
+                if (pathTiles.contains(WorldPointUtil.packWorldPoint(transport.getDestination()))
+                        && !onPath.contains(transport)) {
+                    onPath.add(transport);
+                }
+            }
+        }
+        return onPath.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(onPath);
+    }
+
+    /**
+     * Lower bound on the size of any path {@link #findPath} can return between the two points.
+     * Same-plane paths stop next to the target, cross-plane paths need at least one transport
+     * leaving the start plane and one arriving on the target plane.
+     */
+    public int estimateMinimumPathSize(WorldPoint start, WorldPoint end) {
+        if (start.getPlane() == end.getPlane()) {
+            return Math.max(1, chebyshev(start, end));
+        }
+
+        int toTransport = Integer.MAX_VALUE;
+        int fromTransport = Integer.MAX_VALUE;
+        for (Transport transport : Transport.values()) {
+            if (transport.getOrigin().getPlane() == start.getPlane()) {
+                toTransport = Math.min(toTransport, chebyshev(start, transport.getOrigin()));
+            }
+            if (transport.getDestination().getPlane() == end.getPlane()) {
+                fromTransport = Math.min(fromTransport, Math.max(0, chebyshev(transport.getDestination(), end) - 1));
+            }
+        }
+
+        if (toTransport == Integer.MAX_VALUE || fromTransport == Integer.MAX_VALUE) {
+            return 1;
+        }
+        return toTransport + fromTransport + 2;
+    }
+
+    private static int chebyshev(WorldPoint from, WorldPoint to) {
+        return Math.max(Math.abs(from.getX() - to.getX()), Math.abs(from.getY() - to.getY()));
     }
     
-    private List<WorldPoint> findPathInternal(WorldPoint start, WorldPoint end, int maxIterations) {
+    private List<WorldPoint> findPathInternal(WorldPoint start, WorldPoint end, int maxIterations, BooleanSupplier aborted) {
         // Basic validation
         if (start == null || end == null) {
             return new ArrayList<>();
         }
 
+        long startNanos = System.nanoTime();
+        Query query = new Query();
+        List<WorldPoint> path = search(start, end, maxIterations, aborted, query);
+        metrics.recordQuery(query.outcome, System.nanoTime() - startNanos, query.expanded, query.openSetPeak, path.size());
+        return path;
+    }
+
+    /**
+     * How a single search went, for {@link PathfinderMetrics}.
+     */
+    private static final class Query {
+        private PathfinderMetrics.Outcome outcome = PathfinderMetrics.Outcome.FOUND;
+        private int expanded = 0;
+        private int openSetPeak = 0;
+    }
+
+    private List<WorldPoint> search(WorldPoint start, WorldPoint end, int maxIterations, BooleanSupplier aborted,
+            Query query) {
         // If already at destination
         if (start.equals(end)) {
             List<WorldPoint> path = new ArrayList<>();
@@ -58,7 +145,8 @@ public class Pathfinder {
         // Check if destinations are too far apart (rough distance check)
         int roughDistance = Math.abs(start.getX() - end.getX()) + Math.abs(start.getY() - end.getY());
         if (roughDistance > MAX_PATH_LENGTH) {
-            System.out.println("DEBUG: Pathfinding rejected - too far apart: " + roughDistance + " > " + MAX_PATH_LENGTH);
+            log.debug("Pathfinding rejected - too far apart: {} > {}", roughDistance, MAX_PATH_LENGTH);
+            query.outcome = PathfinderMetrics.Outcome.TOO_FAR;
             return new ArrayList<>(); // Destination too far
         }
         
@@ -128,7 +216,8 @@ public class Pathfinder {
             if (bestTarget != null) {
                 end = bestTarget; // Use closest walkable tile as target
             } else {
-                System.out.println("DEBUG: No walkable directions found for lamp at " + end);
+                log.debug("No walkable directions found for lamp at {}", end);
+                query.outcome = PathfinderMetrics.Outcome.NO_STANDING_TILE;
                 return new ArrayList<>();
             }
         }
@@ -144,9 +233,16 @@ public class Pathfinder {
         startNode.setHCost(calculateHeuristic(start, end));
         startNode.setFCost(startNode.getHCost());
         openSet.add(startNode);
+        query.openSetPeak = 1;
 
         while (!openSet.isEmpty() && iterations < maxIterations) {
             iterations++;
+            query.expanded = iterations;
+
+            if (iterations % ABORT_CHECK_INTERVAL == 0 && aborted.getAsBoolean()) {
+                query.outcome = PathfinderMetrics.Outcome.ABORTED;
+                return new ArrayList<>();
+            }
 
             Node currentNode = openSet.poll();
 
@@ -155,6 +251,7 @@ public class Pathfinder {
                 List<WorldPoint> path = currentNode.getPath();
                 // Additional safety check on path length
                 if (path.size() > MAX_PATH_LENGTH) {
+                    query.outcome = PathfinderMetrics.Outcome.TOO_LONG;
                     return new ArrayList<>();
                 }
                 return path;
@@ -169,6 +266,7 @@ public class Pathfinder {
                     List<WorldPoint> path = currentNode.getPath();
                     // Don't add the lamp itself, just get to adjacent tile
                     if (path.size() > MAX_PATH_LENGTH) {
+                        query.outcome = PathfinderMetrics.Outcome.TOO_LONG;
                         return new ArrayList<>();
                     }
                     return path;
@@ -288,15 +386,18 @@ public class Pathfinder {
 
                     if (!openSet.contains(neighbor)) {
                         openSet.add(neighbor);
+                        query.openSetPeak = Math.max(query.openSetPeak, openSet.size());
                     }
                 }
             }
         }
 
         if (iterations >= maxIterations) {
-            System.out.println("DEBUG: Pathfinding hit MAX_ITERATIONS (" + maxIterations + ")");
+            log.debug("Pathfinding hit MAX_ITERATIONS ({})", maxIterations);
+            query.outcome = PathfinderMetrics.Outcome.ITERATION_CAP;
         } else {
-            System.out.println("DEBUG: Pathfinding failed - openSet empty after " + iterations + " iterations");
+            log.debug("Pathfinding failed - openSet empty after {} iterations", iterations);
+            query.outcome = PathfinderMetrics.Outcome.EXHAUSTED;
         }
         return new ArrayList<>();
     }
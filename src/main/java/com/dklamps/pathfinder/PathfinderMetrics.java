@@ -0,0 +1,135 @@
+package com.dklamps.pathfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * What every {@link Pathfinder#findPath} query cost and how it ended. Queries run concurrently on
+ * the pathfinding thread and the lamp search pool, so everything is recorded without locking.
+ * Counts are cumulative from construction or the last {@link #reset()}.
+ */
+public class PathfinderMetrics {
+    public enum Outcome {
+        FOUND,
+        // Further apart than any path the pathfinder returns
+        TOO_FAR,
+        // The target lamp has no walkable tile next to it
+        NO_STANDING_TILE,
+        ITERATION_CAP,
+        // Every reachable tile was expanded without reaching the target
+        EXHAUSTED,
+        // Found, but longer than the path length limit
+        TOO_LONG,
+        ABORTED
+    }
+
+    @Getter
+    private final LogHistogram latencyNanos = new LogHistogram();
+    @Getter
+    private final LogHistogram expandedNodes = new LogHistogram();
+    @Getter
+    private final LogHistogram openSetPeak = new LogHistogram();
+    // Only for queries that found a path
+    @Getter
+    private final LogHistogram pathLength = new LogHistogram();
+
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    // Route requests served by the speculative search for the next target, and ones that needed a new search
+    private final LongAdder routeCacheHits = new LongAdder();
+    private final LongAdder routeCacheMisses = new LongAdder();
+    @Getter
+    private volatile long sinceMillis = System.currentTimeMillis();
+
+    public PathfinderMetrics() {
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    public void recordQuery(Outcome outcome, long nanos, int expanded, int openSetSize, int pathSize) {
+        outcomes[outcome.ordinal()].increment();
+        latencyNanos.record(nanos);
+        expandedNodes.record(expanded);
+        openSetPeak.record(openSetSize);
+        if (outcome == Outcome.FOUND) {
+            pathLength.record(pathSize);
+        }
+    }
+
+    public void recordRouteCacheLookup(boolean hit) {
+        (hit ? routeCacheHits : routeCacheMisses).increment();
+    }
+
+    public long getQueries() {
+        return latencyNanos.getCount();
+    }
+
+    public long getOutcomeCount(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    public long getRouteCacheHits() {
+        return routeCacheHits.sum();
+    }
+
+    public long getRouteCacheMisses() {
+        return routeCacheMisses.sum();
+    }
+
+    public void reset() {
+        latencyNanos.reset();
+        expandedNodes.reset();
+        openSetPeak.reset();
+        pathLength.reset();
+        for (LongAdder outcome : outcomes) {
+            outcome.reset();
+        }
+        routeCacheHits.reset();
+        routeCacheMisses.reset();
+        sinceMillis = System.currentTimeMillis();
+    }
+
+    public void writeTo(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.printf("cumulative since %s%n", Instant.ofEpochMilli(sinceMillis));
+        out.printf("queries %d%n", getQueries());
+        for (Outcome outcome : Outcome.values()) {
+            out.printf("  %-16s %d%n", outcome.name().toLowerCase(), getOutcomeCount(outcome));
+        }
+        out.printf("%-14s %10s %10s %10s %10s %10s%n", "", "mean", "p50", "p90", "p99", "max");
+        printHistogram(out, "latency us", latencyNanos, 1000);
+        printHistogram(out, "expanded", expandedNodes, 1);
+        printHistogram(out, "open set peak", openSetPeak, 1);
+        printHistogram(out, "path length", pathLength, 1);
+        long lookups = getRouteCacheHits() + getRouteCacheMisses();
+        out.printf("route cache hits %d of %d (%.1f%%)%n", getRouteCacheHits(), lookups,
+                lookups == 0 ? 0.0 : getRouteCacheHits() * 100.0 / lookups);
+        out.flush();
+    }
+
+    public void dump(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writeTo(writer);
+        }
+    }
+
+    private static void printHistogram(PrintWriter out, String name, LogHistogram histogram, double unit) {
+        out.printf("%-14s %10.1f %10.1f %10.1f %10.1f %10.1f%n", name,
+                histogram.getMean() / unit,
+                histogram.getValueAtPercentile(50) / unit,
+                histogram.getValueAtPercentile(90) / unit,
+                histogram.getValueAtPercentile(99) / unit,
+                histogram.getMax() / unit);
+    }
+}
@@ -0,0 +1,190 @@
+package com.dklamps.state;
+
+import com.dklamps.DKLampsConstants;
+import com.dklamps.enums.Direction;
+import com.dklamps.enums.Lamp;
+import java.util.Locale;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Infers lamp statuses from every observation made so far. Each lamp keeps two candidate bits,
+ * "can be broken" and "can be working"; observations clear candidates and propagation repeats
+ * until nothing changes. A lamp is known once only one candidate is left.
+ *
+ * <p>Observations and rules:
+ * <ul>
+ * <li>the varbit fixes the status of every lamp it covers in the current area;</li>
+ * <li>exactly {@link DKLampsConstants#TOTAL_BROKEN_LAMPS} lamps are broken at any time;</li>
+ * <li>a chat hint or hint arrow means at least one lamp of a set is broken.</li>
+ * </ul>
+ */
+@Slf4j
+public class LampKnowledgeEngine {
+    private static final int MAX_HINTS = 8;
+    // Hint directions are coarse, so a lamp matches when it is within 67.5 degrees of the direction
+    private static final double MIN_DIRECTION_COSINE = Math.cos(Math.toRadians(67.5));
+
+    private long canBeBroken = LampStateMask.ALL_LAMPS;
+    private long canBeWorking = LampStateMask.ALL_LAMPS;
+
+    private final long[] hints = new long[MAX_HINTS];
+    private final int[] hintTicks = new int[MAX_HINTS];
+    private int hintCount = 0;
+
+    public void reset() {
+        canBeBroken = LampStateMask.ALL_LAMPS;
+        canBeWorking = LampStateMask.ALL_LAMPS;
+        hintCount = 0;
+    }
+
+    public LampStateMask getState() {
+        return LampStateMask.of(canBeBroken & ~canBeWorking, canBeWorking & ~canBeBroken);
+    }
+
+    /**
+     * Every lamp in {@code observed} is known: broken if it is in {@code broken}, working otherwise.
+     */
+    public void observe(long observed, long broken) {
+        canBeBroken = (canBeBroken & ~observed) | (observed & broken);
+        canBeWorking = (canBeWorking & ~observed) | (observed & ~broken);
+    }
+
+    /**
+     * A lamp was fixed, so another one broke somewhere. Working lamps outside {@code visible} may be
+     * that lamp, and hints older than the previous tick described the lamp that was just fixed.
+     */
+    public void onLampFixed(long visible, int tick) {
+        canBeBroken |= canBeWorking & ~visible;
+
+        int kept = 0;
+        for (int i = 0; i < hintCount; i++) {
+            if (hintTicks[i] >= tick - 1) {
+                hints[kept] = hints[i];
+                hintTicks[kept] = hintTicks[i];
+                kept++;
+            }
+        }
+        hintCount = kept;
+    }
+
+    /**
+     * At least one lamp in {@code candidates} is broken.
+     */
+    public void addBrokenHint(long candidates, int tick) {
+        if (candidates == 0) {
+            return;
+        }
+        if (hintCount == MAX_HINTS) {
+            System.arraycopy(hints, 1, hints, 0, MAX_HINTS - 1);
+            System.arraycopy(hintTicks, 1, hintTicks, 0, MAX_HINTS - 1);
+            hintCount--;
+        }
+        hints[hintCount] = candidates;
+        hintTicks[hintCount] = tick;
+        hintCount++;
+    }
+
+    /**
+     * Applies the rules until a fixed point is reached.
+     *
+     * @return the resulting lamp state
+     */
+    public LampStateMask propagate() {
+        boolean changed = true;
+        while (changed) {
+            long previousBroken = canBeBroken;
+            long previousWorking = canBeWorking;
+
+            long knownBroken = canBeBroken & ~canBeWorking;
+            if (Long.bitCount(knownBroken) >= DKLampsConstants.TOTAL_BROKEN_LAMPS) {
+                canBeBroken = knownBroken;
+                canBeWorking |= LampStateMask.ALL_LAMPS & ~knownBroken;
+            } else if (Long.bitCount(canBeBroken) == DKLampsConstants.TOTAL_BROKEN_LAMPS) {
+                canBeWorking &= ~canBeBroken;
+            }
+
+            for (int i = 0; i < hintCount; i++) {
+                long possible = hints[i] & canBeBroken;
+                if (possible == 0) {
+                    log.debug("Dropping lamp hint contradicted by later observations");
+                    removeHint(i--);
+                } else if (Long.bitCount(possible) == 1) {
+                    canBeWorking &= ~possible;
+                }
+            }
+
+            changed = canBeBroken != previousBroken || canBeWorking != previousWorking;
+        }
+        return getState();
+    }
+
+    private void removeHint(int index) {
+        System.arraycopy(hints, index + 1, hints, index, hintCount - index - 1);
+        System.arraycopy(hintTicks, index + 1, hintTicks, index, hintCount - index - 1);
+        hintCount--;
+    }
+
+    /**
+     * Lamps matching a "another broken lamp nearby" chat hint given at {@code origin}. A direction or
+     * floor that cannot be parsed does not restrict the result.
+     */
+    public static long lampsMatchingHint(WorldPoint origin, String direction, String floor) {
+        Direction hintDirection = parseDirection(direction);
+        long matching = 0L;
+        for (Lamp lamp : Lamp.values()) {
+            WorldPoint location = lamp.getWorldPoint();
+            int dx = location.getX() - origin.getX();
+            int dy = location.getY() - origin.getY();
+            if ((dx == 0 && dy == 0) || !matchesFloor(location.getPlane(), origin.getPlane(), floor)) {
+                continue;
+            }
+            if (hintDirection != null) {
+                double cosine = (dx * hintDirection.getX() + dy * hintDirection.getY())
+                        / (Math.hypot(dx, dy) * Math.hypot(hintDirection.getX(), hintDirection.getY()));
+                if (cosine < MIN_DIRECTION_COSINE) {
+                    continue;
+                }
+            }
+            matching |= LampStateMask.bit(lamp);
+        }
+        return matching;
+    }
+
+    /**
+     * Lamps under a hint arrow at {@code arrow}, on a floor matching the last chat hint.
+     */
+    public static long lampsAtHintArrow(WorldPoint arrow, int playerPlane, String floor) {
+        long matching = 0L;
+        for (Lamp lamp : Lamp.values()) {
+            WorldPoint location = lamp.getWorldPoint();
+            if (location.getX() == arrow.getX() && location.getY() == arrow.getY()
+                    && matchesFloor(location.getPlane(), playerPlane, floor)) {
+                matching |= LampStateMask.bit(lamp);
+            }
+        }
+        return matching;
+    }
+
+    private static boolean matchesFloor(int lampPlane, int originPlane, String floor) {
+        if ("upstairs".equals(floor)) {
+            return lampPlane > originPlane;
+        } else if ("downstairs".equals(floor)) {
+            return lampPlane < originPlane;
+        } else if ("on the same floor".equals(floor)) {
+            return lampPlane == originPlane;
+        }
+        return true;
+    }
+
+    private static Direction parseDirection(String direction) {
+        if (direction == null) {
+            return null;
+        }
+        try {
+            return Direction.valueOf(direction.trim().toUpperCase(Locale.ROOT).replace('-', '_').replace(' ', '_'));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.dklamps.state;
+
+import com.dklamps.enums.Area;
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.LampStatus;
+import lombok.Getter;
+
+/**
+ * Immutable snapshot of every lamp's status, stored as bitmasks indexed by {@link Lamp#ordinal()}.
+ * A lamp is unknown when it is neither in the broken nor in the working mask.
+ */
+@Getter
+public final class LampStateMask {
+    private static final Lamp[] LAMPS = Lamp.values();
+
+    public static final long ALL_LAMPS;
+    public static final LampStateMask ALL_UNKNOWN = new LampStateMask(0L, 0L);
+
+    private static final long[] AREA_MASKS = new long[Area.values().length];
+    private static final long[] VALID_OPPOSITE_MASKS = new long[Area.values().length];
+
+    static {
+        if (LAMPS.length > Long.SIZE) {
+            throw new IllegalStateException("Lamp masks only fit " + Long.SIZE + " lamps, found " + LAMPS.length);
+        }
+        ALL_LAMPS = LAMPS.length == Long.SIZE ? -1L : (1L << LAMPS.length) - 1;
+
+        int[] maxBitByArea = new int[Area.values().length];
+        int[] bitsByArea = new int[Area.values().length];
+        for (Lamp lamp : LAMPS) {
+            int area = lamp.getArea().ordinal();
+            AREA_MASKS[area] |= bit(lamp);
+            maxBitByArea[area] = Math.max(maxBitByArea[area], lamp.getBitPosition());
+            bitsByArea[area] |= 1 << lamp.getBitPosition();
+        }
+
+        // The varbit also covers lamps of the opposite area on bit positions the current area does
+        // not use itself, up to the highest bit the current area uses.
+        for (Area area : Area.values()) {
+            Area opposite = area.getOpposite();
+            for (Lamp lamp : LAMPS) {
+                if (lamp.getArea() == opposite
+                        && lamp.getBitPosition() <= maxBitByArea[area.ordinal()]
+                        && (bitsByArea[area.ordinal()] & (1 << lamp.getBitPosition())) == 0) {
+                    VALID_OPPOSITE_MASKS[area.ordinal()] |= bit(lamp);
+                }
+            }
+        }
+    }
+
+    private final long broken;
+    private final long working;
+
+    private LampStateMask(long broken, long working) {
+        this.broken = broken;
+        this.working = working & ~broken;
+    }
+
+    public static LampStateMask of(long broken, long working) {
+        return new LampStateMask(broken & ALL_LAMPS, working & ALL_LAMPS);
+    }
+
+    public static long bit(Lamp lamp) {
+        return 1L << lamp.ordinal();
+    }
+
+    public static long areaMask(Area area) {
+        return area == null ? 0L : AREA_MASKS[area.ordinal()];
+    }
+
+    public static long validOppositeMask(Area area) {
+        return area == null ? 0L : VALID_OPPOSITE_MASKS[area.ordinal()];
+    }
+
+    /**
+     * Lamps whose status is revealed by the varbit while standing in the given area.
+     */
+    public static long observedMask(Area area) {
+        return areaMask(area) | validOppositeMask(area);
+    }
+
+    public static Lamp lamp(int index) {
+        return LAMPS[index];
+    }
+
+    public long getUnknown() {
+        return ALL_LAMPS & ~(broken | working);
+    }
+
+    public LampStatus getStatus(Lamp lamp) {
+        long bit = bit(lamp);
+        if ((broken & bit) != 0) {
+            return LampStatus.BROKEN;
+        }
+        if ((working & bit) != 0) {
+            return LampStatus.WORKING;
+        }
+        return LampStatus.UNKNOWN;
+    }
+
+    public boolean hasUnknownIn(Area area) {
+        return (getUnknown() & areaMask(area)) != 0;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LampStateMask)) {
+            return false;
+        }
+        LampStateMask other = (LampStateMask) obj;
+        return broken == other.broken && working == other.working;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(broken) * 31 + Long.hashCode(working);
+    }
+
+    @Override
+    public String toString() {
+        return "LampStateMask(broken=" + Long.toHexString(broken) + ", working=" + Long.toHexString(working) + ")";
+    }
+}
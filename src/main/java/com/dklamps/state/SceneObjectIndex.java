@@ -0,0 +1,103 @@
+package com.dklamps.state;
+
+import com.dklamps.pathfinder.WorldPointUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import lombok.Getter;
+import net.runelite.api.TileObject;
+import net.runelite.api.coords.WorldPoint;
+
+/**
+ * Spawned scene objects of one kind, indexed by packed tile and bucketed by plane. Updated from
+ * the spawn and despawn events, so lookups never rebuild anything.
+ */
+public class SceneObjectIndex<T extends TileObject> {
+    public static final int PLANES = 4;
+
+    private final Map<Integer, T> byTile = new HashMap<>();
+    private final List<List<T>> byPlane = new ArrayList<>(PLANES);
+    private final List<List<T>> byPlaneView = new ArrayList<>(PLANES);
+    // Bumped on every change, so anything derived from the index knows when to recompute
+    @Getter
+    private int version = 0;
+
+    public SceneObjectIndex() {
+        for (int plane = 0; plane < PLANES; plane++) {
+            List<T> bucket = new ArrayList<>();
+            byPlane.add(bucket);
+            byPlaneView.add(Collections.unmodifiableList(bucket));
+        }
+    }
+
+    public void add(T object) {
+        WorldPoint location = object.getWorldLocation();
+        T previous = byTile.put(WorldPointUtil.packWorldPoint(location), object);
+        if (previous != null) {
+            bucket(previous.getPlane()).remove(previous);
+        }
+        bucket(object.getPlane()).add(object);
+        version++;
+    }
+
+    public void remove(T object) {
+        WorldPoint location = object.getWorldLocation();
+        if (byTile.remove(WorldPointUtil.packWorldPoint(location), object)) {
+            bucket(object.getPlane()).remove(object);
+            version++;
+        }
+    }
+
+    public void clear() {
+        byTile.clear();
+        for (List<T> bucket : byPlane) {
+            bucket.clear();
+        }
+        version++;
+    }
+
+    public boolean isEmpty() {
+        return byTile.isEmpty();
+    }
+
+    public T get(WorldPoint location) {
+        return byTile.get(WorldPointUtil.packWorldPoint(location));
+    }
+
+    public T get(int packedLocation) {
+        return byTile.get(packedLocation);
+    }
+
+    public boolean contains(T object) {
+        return object != null && byTile.get(WorldPointUtil.packWorldPoint(object.getWorldLocation())) == object;
+    }
+
+    public List<T> getOnPlane(int plane) {
+        return plane >= 0 && plane < PLANES ? byPlaneView.get(plane) : Collections.emptyList();
+    }
+
+    /**
+     * @return the object on {@code from}'s plane closest to it by Chebyshev distance, or
+     *         {@code null} when none matches
+     */
+    public T nearest(WorldPoint from, Predicate<T> filter) {
+        T nearest = null;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (T object : getOnPlane(from.getPlane())) {
+            WorldPoint location = object.getWorldLocation();
+            int distance = Math.max(Math.abs(location.getX() - from.getX()), Math.abs(location.getY() - from.getY()));
+            if (distance < nearestDistance && filter.test(object)) {
+                nearest = object;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    private List<T> bucket(int plane) {
+        return byPlane.get(Math.max(0, Math.min(PLANES - 1, plane)));
+    }
+}
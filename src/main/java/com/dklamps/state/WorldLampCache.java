@@ -0,0 +1,204 @@
+package com.dklamps.state;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Last known lamp state per world, so hopping back to a world does not start from scratch. Lamps
+ * keep breaking while nobody watches, so a cached state is only "stale known": its confidence
+ * halves every {@link #HALF_LIFE_MILLIS} and entries are dropped after {@link #MAX_AGE_MILLIS}.
+ *
+ * <p>Only broken lamps are kept. An entry holds the lamps seen broken on the latest visit, plus the
+ * lamps carried over from earlier visits that the latest visit has not seen again. Carried lamps
+ * keep the time they were first seen broken, so a quick round trip through a world does not make
+ * them look fresh.
+ *
+ * <p>Entries are only touched on the client thread. Saving encodes them there and hands the bytes
+ * to the writer, so the file is written off the client thread.
+ */
+@Slf4j
+public class WorldLampCache {
+    private static final int FILE_MAGIC = 0x444B4C43; // "DKLC"
+    private static final int FILE_VERSION = 2;
+    private static final long HALF_LIFE_MILLIS = 10 * 60 * 1000L;
+    private static final long MAX_AGE_MILLIS = 60 * 60 * 1000L;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 40;
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+        private final int world;
+        private final int tick;
+        private final long observedAtMillis;
+        private final long broken;
+        // Broken lamps from earlier visits not seen again since, observed at carriedAtMillis
+        private final long carriedBroken;
+        private final long carriedAtMillis;
+
+        public long getAllBroken() {
+            return broken | carriedBroken;
+        }
+
+        /**
+         * @return the confidence that the given lamps are still broken, going by the oldest of them
+         */
+        public double confidence(long lamps, long nowMillis) {
+            long observedAt = (lamps & carriedBroken & ~broken) != 0 ? carriedAtMillis : observedAtMillis;
+            return WorldLampCache.confidence(observedAt, nowMillis);
+        }
+
+        /**
+         * @return the broken lamps that are still at least {@code minConfidence} likely to be broken
+         */
+        public long getBroken(long nowMillis, double minConfidence) {
+            long trusted = 0L;
+            if (WorldLampCache.confidence(observedAtMillis, nowMillis) >= minConfidence) {
+                trusted |= broken;
+            }
+            if (WorldLampCache.confidence(carriedAtMillis, nowMillis) >= minConfidence) {
+                trusted |= carriedBroken;
+            }
+            return trusted;
+        }
+    }
+
+    private final File file;
+    private final Executor writer;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private boolean dirty = false;
+
+    public WorldLampCache(File file, Executor writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    /**
+     * Stores the world's lamp state. Lamps broken in {@code restored}, the entry the current visit
+     * started from, are carried over with their original time while {@code lampState} does not know
+     * them yet.
+     */
+    public void put(int world, int tick, long nowMillis, LampStateMask lampState, Entry restored) {
+        if (world <= 0) {
+            return;
+        }
+
+        long carried = 0L;
+        long carriedAt = 0L;
+        if (restored != null) {
+            carried = restored.getAllBroken() & lampState.getUnknown();
+            // Carried lamps share one time, so take the oldest one any of them was seen at
+            carriedAt = (carried & restored.getCarriedBroken() & ~restored.getBroken()) != 0
+                    ? restored.getCarriedAtMillis() : restored.getObservedAtMillis();
+            if (nowMillis - carriedAt > MAX_AGE_MILLIS) {
+                carried = 0L;
+            }
+        }
+        if (carried == 0) {
+            carriedAt = 0L;
+        }
+
+        if (lampState.getBroken() == 0 && carried == 0) {
+            dirty |= entries.remove(world) != null;
+            return;
+        }
+        entries.put(world, new Entry(world, tick, nowMillis, lampState.getBroken(), carried, carriedAt));
+        dirty = true;
+    }
+
+    /**
+     * @return the cached state of the world, or {@code null} when there is none or it expired
+     */
+    public Entry get(int world, long nowMillis) {
+        Entry entry = entries.get(world);
+        if (entry != null && nowMillis - entry.getObservedAtMillis() > MAX_AGE_MILLIS) {
+            entries.remove(world);
+            dirty = true;
+            return null;
+        }
+        return entry;
+    }
+
+    public void load(long nowMillis) {
+        entries.clear();
+        dirty = false;
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                log.warn("Ignoring lamp cache {} with unknown format", file);
+                return;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong());
+                if (nowMillis - entry.getObservedAtMillis() <= MAX_AGE_MILLIS) {
+                    entries.put(entry.getWorld(), entry);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read lamp cache {}", file, e);
+            entries.clear();
+        }
+    }
+
+    public void save() {
+        if (!dirty) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + entries.size() * ENTRY_SIZE);
+        buffer.putInt(FILE_MAGIC);
+        buffer.putInt(FILE_VERSION);
+        buffer.putInt(entries.size());
+        for (Entry entry : entries.values()) {
+            buffer.putInt(entry.getWorld());
+            buffer.putInt(entry.getTick());
+            buffer.putLong(entry.getObservedAtMillis());
+            buffer.putLong(entry.getBroken());
+            buffer.putLong(entry.getCarriedBroken());
+            buffer.putLong(entry.getCarriedAtMillis());
+        }
+        dirty = false;
+
+        byte[] bytes = buffer.array();
+        writer.execute(() -> write(bytes));
+    }
+
+    private static double confidence(long observedAtMillis, long nowMillis) {
+        long age = Math.max(0, nowMillis - observedAtMillis);
+        return Math.pow(0.5, age / (double) HALF_LIFE_MILLIS);
+    }
+
+    private void write(byte[] bytes) {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            log.warn("Failed to create lamp cache directory {}", directory);
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(temp.toPath(), bytes);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to write lamp cache {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.dklamps.stats;
+
+import com.dklamps.enums.Lamp;
+import com.dklamps.state.LampStateMask;
+import java.util.Arrays;
+
+/**
+ * How often each lamp has been broken across every logged session, counted from its fixes. Counts
+ * live in primitive arrays indexed by lamp ordinal and varbit bit position, and are updated on the
+ * client thread as fixes happen.
+ *
+ * <p>A lamp's weight is its share of all breaks relative to an even share, so 1 means average and
+ * an empty history weighs every lamp 1. Lamps with few fixes are pulled towards the share of their
+ * bit position, which pools the lamps of both areas that the varbit reports together. Weights are
+ * republished as a whole, so the pathfinding thread reads a consistent set.
+ *
+ * <p>Logged fixes of several lamps on the same tick are skipped. Only one lamp can be fixed per
+ * tick, so such a batch is what older versions logged after a hop or relog, when the new world's
+ * first decode was diffed against the old world's broken lamps.
+ */
+public class BreakModel implements SessionLog.Visitor {
+    private static final Lamp[] LAMPS = Lamp.values();
+    private static final int BIT_POSITIONS;
+    private static final int[] LAMPS_ON_BIT;
+    // Pseudo fixes spread evenly before any history, so the first few fixes barely move the weights
+    private static final double PRIOR_FIXES = LAMPS.length;
+
+    static {
+        int maxBit = 0;
+        for (Lamp lamp : LAMPS) {
+            maxBit = Math.max(maxBit, lamp.getBitPosition());
+        }
+        BIT_POSITIONS = maxBit + 1;
+        LAMPS_ON_BIT = new int[BIT_POSITIONS];
+        for (Lamp lamp : LAMPS) {
+            LAMPS_ON_BIT[lamp.getBitPosition()]++;
+        }
+    }
+
+    private final int[] lampBreaks = new int[LAMPS.length];
+    private final int[] bitBreaks = new int[BIT_POSITIONS];
+    private int totalBreaks = 0;
+
+    // Logged fix waiting to see whether another fix shares its tick
+    private int pendingLamp = -1;
+    private int pendingTick = 0;
+    private boolean pendingBatch = false;
+
+    private volatile double[] weights = uniformWeights();
+
+    @Override
+    public void visit(int type, int detail, int tick, long timeMillis, long value) {
+        if (type == SessionLog.LAMP_FIXED && detail < LAMPS.length) {
+            if (pendingLamp >= 0 && tick == pendingTick) {
+                pendingBatch = true;
+                return;
+            }
+            countPending();
+            pendingLamp = detail;
+            pendingTick = tick;
+        } else if (type == SessionLog.SESSION_START || type == SessionLog.SESSION_END) {
+            // Ticks restart with every login
+            countPending();
+        }
+    }
+
+    public void onLampFixed(Lamp lamp) {
+        count(lamp.ordinal());
+        publish();
+    }
+
+    private void countPending() {
+        if (pendingLamp >= 0 && !pendingBatch) {
+            count(pendingLamp);
+        }
+        pendingLamp = -1;
+        pendingBatch = false;
+    }
+
+    private void count(int lamp) {
+        lampBreaks[lamp]++;
+        bitBreaks[LAMPS[lamp].getBitPosition()]++;
+        totalBreaks++;
+    }
+
+    /**
+     * Recomputes the weights from the counts, after a batch of {@link #visit} calls.
+     */
+    public void publish() {
+        countPending();
+        double[] updated = new double[LAMPS.length];
+        for (int i = 0; i < LAMPS.length; i++) {
+            int bit = LAMPS[i].getBitPosition();
+            double bitShare = (bitBreaks[bit] + PRIOR_FIXES * LAMPS_ON_BIT[bit] / LAMPS.length)
+                    / (totalBreaks + PRIOR_FIXES) / LAMPS_ON_BIT[bit];
+            double share = (lampBreaks[i] + PRIOR_FIXES * bitShare) / (totalBreaks + PRIOR_FIXES);
+            updated[i] = share * LAMPS.length;
+        }
+        weights = updated;
+    }
+
+    public double getWeight(Lamp lamp) {
+        return weights[lamp.ordinal()];
+    }
+
+    /**
+     * @return the summed weight of every lamp in {@code lamps}, the expected number of broken lamps
+     *         among them up to a factor shared by every mask
+     */
+    public double getWeight(long lamps) {
+        double[] current = weights;
+        double total = 0;
+        for (long remaining = lamps & LampStateMask.ALL_LAMPS; remaining != 0; remaining &= remaining - 1) {
+            total += current[Long.numberOfTrailingZeros(remaining)];
+        }
+        return total;
+    }
+
+    public int getTotalBreaks() {
+        return totalBreaks;
+    }
+
+    private static double[] uniformWeights() {
+        double[] uniform = new double[LAMPS.length];
+        Arrays.fill(uniform, 1.0);
+        return uniform;
+    }
+}
@@ -0,0 +1,166 @@
+package com.dklamps.stats;
+
+import java.util.Arrays;
+
+/**
+ * Timestamps of the most recent lamp fixes in a fixed-size ring buffer, with a session clock
+ * that stops while the player is idle. A gap between fixes longer than {@link #IDLE_GAP_MILLIS}
+ * counts as a break: it adds nothing to the active time and is left out of the fix intervals.
+ *
+ * <p>Rates count intervals rather than fixes. The clock starts at a fix, so that fix (and the first
+ * one after a break) took no active time and is not counted.
+ */
+public class FixTimeline {
+    public static final long IDLE_GAP_MILLIS = 5 * 60_000L;
+    private static final int CAPACITY = 1024;
+
+    private final long[] timestamps = new long[CAPACITY];
+    // Index of the oldest timestamp, and how many are stored
+    private int head = 0;
+    private int size = 0;
+    private long activeMillis = 0;
+    private int intervals = 0;
+
+    private long[] intervalScratch = new long[0];
+    private long medianInterval = -1;
+    private boolean medianDirty = false;
+
+    public void record(long nowMillis) {
+        if (size > 0) {
+            long gap = nowMillis - newest();
+            if (gap >= 0 && gap <= IDLE_GAP_MILLIS) {
+                activeMillis += gap;
+                intervals++;
+            }
+        }
+
+        if (size == CAPACITY) {
+            timestamps[head] = nowMillis;
+            head = (head + 1) % CAPACITY;
+        } else {
+            timestamps[(head + size) % CAPACITY] = nowMillis;
+            size++;
+        }
+        medianDirty = true;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        activeMillis = 0;
+        intervals = 0;
+        medianInterval = -1;
+        medianDirty = false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isIdle(long nowMillis) {
+        return size == 0 || nowMillis - newest() > IDLE_GAP_MILLIS;
+    }
+
+    /**
+     * @return time spent fixing lamps since the first fix, excluding breaks; still running
+     *         between fixes until the idle gap is reached
+     */
+    public long getActiveMillis(long nowMillis) {
+        if (isIdle(nowMillis)) {
+            return activeMillis;
+        }
+        return activeMillis + Math.max(0, nowMillis - newest());
+    }
+
+    /**
+     * @return fixes per hour over the whole session's active time, 0 before two fixes in a row
+     */
+    public double getRatePerHour(long nowMillis) {
+        long active = getActiveMillis(nowMillis);
+        if (intervals == 0 || active <= 0) {
+            return 0;
+        }
+        return intervals * 3_600_000.0 / active;
+    }
+
+    /**
+     * @return fixes per hour over the active time within the last {@code windowMillis}, 0 before
+     *         two fixes in a row
+     */
+    public double getRatePerHour(long windowMillis, long nowMillis) {
+        long fromMillis = nowMillis - windowMillis;
+        int first = size - countSince(fromMillis);
+        int windowIntervals = 0;
+        long active = 0;
+        for (int i = Math.max(first, 1); i < size; i++) {
+            long gap = get(i) - get(i - 1);
+            if (gap <= IDLE_GAP_MILLIS) {
+                // The interval leading into the window only counts its part inside the window
+                active += Math.min(gap, get(i) - fromMillis);
+                windowIntervals++;
+            }
+        }
+        if (!isIdle(nowMillis)) {
+            active += nowMillis - Math.max(newest(), fromMillis);
+        }
+
+        if (windowIntervals == 0 || active <= 0) {
+            return 0;
+        }
+        return windowIntervals * 3_600_000.0 / active;
+    }
+
+    /**
+     * @return median time between consecutive fixes, breaks excluded, or -1 without any
+     */
+    public long getMedianIntervalMillis() {
+        if (!medianDirty) {
+            return medianInterval;
+        }
+        medianDirty = false;
+
+        if (intervalScratch.length < size) {
+            intervalScratch = new long[CAPACITY];
+        }
+        int count = 0;
+        for (int i = 1; i < size; i++) {
+            long interval = get(i) - get(i - 1);
+            if (interval <= IDLE_GAP_MILLIS) {
+                intervalScratch[count++] = interval;
+            }
+        }
+
+        if (count == 0) {
+            medianInterval = -1;
+        } else {
+            Arrays.sort(intervalScratch, 0, count);
+            medianInterval = count % 2 == 1
+                    ? intervalScratch[count / 2]
+                    : (intervalScratch[count / 2 - 1] + intervalScratch[count / 2]) / 2;
+        }
+        return medianInterval;
+    }
+
+    private int countSince(long fromMillis) {
+        // Timestamps are recorded in order, so binary search for the first one inside the window
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(mid) > fromMillis) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return size - low;
+    }
+
+    private long get(int index) {
+        return timestamps[(head + index) % CAPACITY];
+    }
+
+    private long newest() {
+        return get(size - 1);
+    }
+}
@@ -0,0 +1,149 @@
+package com.dklamps.stats;
+
+import com.dklamps.enums.InventoryState;
+import com.dklamps.enums.TargetType;
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * Splits the session into legs by what the player is heading for: a leg ends when the target
+ * type or the bulb inventory changes, when a lamp is fixed, or when ticks were missed (the player
+ * left Dorgesh-Kaan or logged out). Finished legs are kept per target type as a tick-count
+ * histogram, so the breakdown costs a few primitive arrays however long the session runs.
+ */
+public class LegTimer {
+    public static final int BUCKET_TICKS = 10;
+    // The last bucket also holds every longer leg
+    public static final int BUCKETS = 30;
+
+    private static final TargetType[] LEG_TYPES = TargetType.values();
+
+    public interface Listener {
+        void onLegFinished(TargetType type, int endTick, int ticks);
+    }
+
+    private final Listener listener;
+
+    private final int[][] histograms = new int[LEG_TYPES.length][BUCKETS];
+    private final long[] totalTicks = new long[LEG_TYPES.length];
+    private final int[] legCounts = new int[LEG_TYPES.length];
+
+    @Getter
+    private TargetType currentType = null;
+    private InventoryState currentInventory = null;
+    private int legStartTick = -1;
+    private int lastTick = -1;
+    // Bumped whenever a leg finishes, so displays know when to refresh
+    @Getter
+    private int version = 0;
+
+    public LegTimer() {
+        this(null);
+    }
+
+    public LegTimer(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void onGameTick(int tick, TargetType targetType, InventoryState inventoryState) {
+        if (currentType != null && tick != lastTick + 1) {
+            endLeg(lastTick + 1);
+        } else if (currentType != null && (targetType != currentType || inventoryState != currentInventory)) {
+            endLeg(tick);
+        }
+
+        if (currentType == null) {
+            currentType = targetType;
+            currentInventory = inventoryState;
+            legStartTick = tick;
+        }
+        lastTick = tick;
+    }
+
+    /**
+     * Ends the current leg and starts another of the same type, used when a lamp was fixed.
+     */
+    public void split() {
+        if (currentType == null) {
+            return;
+        }
+        TargetType type = currentType;
+        InventoryState inventoryState = currentInventory;
+        int tick = lastTick + 1;
+        endLeg(tick);
+        currentType = type;
+        currentInventory = inventoryState;
+        legStartTick = tick;
+    }
+
+    public void clear() {
+        for (int[] histogram : histograms) {
+            Arrays.fill(histogram, 0);
+        }
+        Arrays.fill(totalTicks, 0);
+        Arrays.fill(legCounts, 0);
+        currentType = null;
+        currentInventory = null;
+        legStartTick = -1;
+        lastTick = -1;
+        version++;
+    }
+
+    public int getLegCount(TargetType type) {
+        return legCounts[type.ordinal()];
+    }
+
+    /**
+     * @return ticks spent in finished legs of the type plus the running one
+     */
+    public long getTotalTicks(TargetType type) {
+        long ticks = totalTicks[type.ordinal()];
+        if (type == currentType) {
+            ticks += getCurrentLegTicks();
+        }
+        return ticks;
+    }
+
+    public int getCurrentLegTicks() {
+        return currentType == null ? 0 : lastTick + 1 - legStartTick;
+    }
+
+    /**
+     * @return median length of the finished legs of the type, to the nearest histogram bucket,
+     *         or -1 without any
+     */
+    public int getMedianTicks(TargetType type) {
+        int count = legCounts[type.ordinal()];
+        if (count == 0) {
+            return -1;
+        }
+
+        int[] histogram = histograms[type.ordinal()];
+        int middle = (count + 1) / 2;
+        int seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += histogram[bucket];
+            if (seen >= middle) {
+                return bucket * BUCKET_TICKS + BUCKET_TICKS / 2;
+            }
+        }
+        return (BUCKETS - 1) * BUCKET_TICKS;
+    }
+
+    private void endLeg(int endTick) {
+        int ticks = endTick - legStartTick;
+        if (ticks > 0) {
+            int type = currentType.ordinal();
+            histograms[type][Math.min(ticks / BUCKET_TICKS, BUCKETS - 1)]++;
+            totalTicks[type] += ticks;
+            legCounts[type]++;
+            version++;
+            if (listener != null) {
+                listener.onLegFinished(currentType, endTick, ticks);
+            }
+        }
+        currentType = null;
+        currentInventory = null;
+        legStartTick = -1;
+    }
+}
@@ -0,0 +1,55 @@
+package com.dklamps.stats;
+
+import com.dklamps.enums.TargetType;
+import lombok.Getter;
+
+/**
+ * Totals over every session in a {@link SessionLog}, built by streaming the log once.
+ */
+@Getter
+public class SessionHistory implements SessionLog.Visitor {
+    private int sessions = 0;
+    private long lampsFixed = 0;
+    private long firstSessionMillis = -1;
+    private long lastSessionMillis = -1;
+    // Highest lifetime total the game reported. Fixes are not added on top, the game's report of a
+    // fix can be logged before or after the fix itself.
+    private long totalLampsFixed = 0;
+    private final long[] legTicks = new long[TargetType.values().length];
+    private final int[] legCounts = new int[TargetType.values().length];
+
+    @Override
+    public void visit(int type, int detail, int tick, long timeMillis, long value) {
+        switch (type) {
+            case SessionLog.SESSION_START:
+                sessions++;
+                if (firstSessionMillis < 0) {
+                    firstSessionMillis = timeMillis;
+                }
+                lastSessionMillis = timeMillis;
+                break;
+            case SessionLog.LAMP_FIXED:
+                lampsFixed++;
+                break;
+            case SessionLog.LEG:
+                if (detail < legTicks.length) {
+                    legTicks[detail] += value;
+                    legCounts[detail]++;
+                }
+                break;
+            case SessionLog.TOTAL_FIXED:
+                totalLampsFixed = Math.max(totalLampsFixed, value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public long getLegTicks(TargetType type) {
+        return legTicks[type.ordinal()];
+    }
+
+    public int getLegCount(TargetType type) {
+        return legCounts[type.ordinal()];
+    }
+}
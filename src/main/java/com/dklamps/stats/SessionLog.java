@@ -0,0 +1,153 @@
+package com.dklamps.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only history of every session as fixed-size binary records. Records are encoded into an
+ * in-memory buffer on the caller's thread and appended to the file on {@code writer}; reading maps
+ * the file and walks the records without allocating per record.
+ *
+ * <p>Record layout, {@link #RECORD_SIZE} bytes big-endian: type (byte), detail (byte), unused
+ * (short), tick (int), wall clock millis (long), value (long).
+ */
+@Slf4j
+public class SessionLog {
+    public static final int SESSION_START = 1;
+    // value: lamps fixed in the session
+    public static final int SESSION_END = 2;
+    // detail: lamp ordinal
+    public static final int LAMP_FIXED = 3;
+    // detail: target type ordinal, value: leg length in ticks
+    public static final int LEG = 4;
+    // value: lifetime lamps fixed as reported by the game
+    public static final int TOTAL_FIXED = 5;
+
+    public static final int RECORD_SIZE = 24;
+    private static final int FILE_MAGIC = 0x444B534C; // "DKSL"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int PENDING_RECORDS = 256;
+    private static final long FLUSH_INTERVAL_MILLIS = 60_000L;
+
+    public interface Visitor {
+        void visit(int type, int detail, int tick, long timeMillis, long value);
+    }
+
+    private final File file;
+    private final Executor writer;
+    private ByteBuffer pending = ByteBuffer.allocate(PENDING_RECORDS * RECORD_SIZE);
+    private long lastFlushMillis = 0;
+
+    public SessionLog(File file, Executor writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    public synchronized void append(int type, int detail, int tick, long timeMillis, long value) {
+        if (pending.remaining() < RECORD_SIZE) {
+            flush();
+        }
+
+        pending.put((byte) type);
+        pending.put((byte) detail);
+        pending.putShort((short) 0);
+        pending.putInt(tick);
+        pending.putLong(timeMillis);
+        pending.putLong(value);
+
+        if (timeMillis - lastFlushMillis >= FLUSH_INTERVAL_MILLIS) {
+            lastFlushMillis = timeMillis;
+            flush();
+        }
+    }
+
+    /**
+     * Hands everything appended so far to the writer.
+     */
+    public synchronized void flush() {
+        if (pending.position() == 0) {
+            return;
+        }
+
+        pending.flip();
+        ByteBuffer records = pending;
+        pending = ByteBuffer.allocate(PENDING_RECORDS * RECORD_SIZE);
+        writer.execute(() -> write(records));
+    }
+
+    private void write(ByteBuffer records) {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            log.warn("Failed to create session log directory {}", directory);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(FILE_MAGIC).putInt(FILE_VERSION).flip();
+                channel.write(header);
+            }
+            // A record cut short by a crash would misalign everything after it
+            long misaligned = (channel.size() - HEADER_SIZE) % RECORD_SIZE;
+            if (misaligned != 0) {
+                channel.write(ByteBuffer.allocate(RECORD_SIZE - (int) misaligned));
+            }
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to append to session log {}", file, e);
+        }
+    }
+
+    /**
+     * Streams every record in the log to {@code visitor}, oldest first. Padding left by a
+     * truncated record is skipped as type 0.
+     *
+     * @return the number of records read
+     */
+    public int read(Visitor visitor) {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return 0;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+                log.warn("Ignoring session log {} with unknown format", file);
+                return 0;
+            }
+
+            int count = 0;
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int type = buffer.get();
+                int detail = buffer.get() & 0xFF;
+                buffer.getShort();
+                int tick = buffer.getInt();
+                long timeMillis = buffer.getLong();
+                long value = buffer.getLong();
+                if (type != 0) {
+                    visitor.visit(type, detail, tick, timeMillis, value);
+                    count++;
+                }
+            }
+            return count;
+        } catch (IOException e) {
+            log.warn("Failed to read session log {}", file, e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.dklamps;
+
+import com.dklamps.enums.Area;
+import com.dklamps.enums.Lamp;
+import com.dklamps.state.LampStateMask;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class DKLampsHelperTest
+{
+	@Test
+	public void decodeTablesMatchBitByBitDecodeForEveryByte()
+	{
+		for (Area area : Area.values())
+		{
+			for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE)
+			{
+				for (int value = 0; value < 256; value++)
+				{
+					int varbit = value << shift;
+					assertEquals(area + " varbit " + Integer.toHexString(varbit),
+						referenceDecode(varbit, area), DKLampsHelper.getBrokenLamps(varbit, area));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void decodeTablesCombineBytes()
+	{
+		Random random = new Random(31);
+		for (Area area : Area.values())
+		{
+			for (int i = 0; i < 10_000; i++)
+			{
+				int varbit = random.nextInt();
+				assertEquals(area + " varbit " + Integer.toHexString(varbit),
+					referenceDecode(varbit, area), DKLampsHelper.getBrokenLamps(varbit, area));
+			}
+			assertEquals(referenceDecode(-1, area), DKLampsHelper.getBrokenLamps(-1, area));
+		}
+	}
+
+	@Test
+	public void decodeOutsideDorgeshKaanFindsNothing()
+	{
+		assertEquals(0L, DKLampsHelper.getBrokenLamps(-1, null));
+	}
+
+	/**
+	 * The original decode: walk the bits up to the highest one the current area uses, and take the
+	 * current area's lamp on that bit, or else the opposite area's.
+	 */
+	private static long referenceDecode(int varbit, Area area)
+	{
+		Area opposite = area.getOpposite();
+		int maxBit = 0;
+		for (Lamp lamp : Lamp.values())
+		{
+			if (lamp.getArea() == area)
+			{
+				maxBit = Math.max(maxBit, lamp.getBitPosition());
+			}
+		}
+
+		long broken = 0L;
+		for (int bit = 0; bit <= maxBit; bit++)
+		{
+			if ((varbit & (1 << bit)) == 0)
+			{
+				continue;
+			}
+
+			Lamp lampOnBit = null;
+			for (Lamp lamp : Lamp.values())
+			{
+				if (lamp.getBitPosition() != bit)
+				{
+					continue;
+				}
+				if (lamp.getArea() == area)
+				{
+					lampOnBit = lamp;
+					break;
+				}
+				if (lamp.getArea() == opposite)
+				{
+					lampOnBit = lamp;
+				}
+			}
+
+			if (lampOnBit != null)
+			{
+				broken |= LampStateMask.bit(lampOnBit);
+			}
+		}
+		return broken;
+	}
+}
@@ -0,0 +1,131 @@
+package com.dklamps;
+
+import com.dklamps.enums.Lamp;
+import com.dklamps.state.LampStateMask;
+import com.dklamps.state.WorldLampCache;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Player;
+import net.runelite.api.events.VarbitChanged;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DKLampsStateManagerTest
+{
+	private static final Lamp LAMP = Lamp.P0_S_LAMP_1;
+
+	private final Map<String, Object> clientValues = new HashMap<>();
+	private DKLampsStatsTracker statsTracker;
+	private DKLampsStateManager stateManager;
+
+	@Before
+	public void setUp()
+	{
+		Map<String, Object> playerValues = new HashMap<>();
+		playerValues.put("getWorldLocation", LAMP.getWorldPoint());
+		clientValues.put("getLocalPlayer", fake(Player.class, playerValues));
+		clientValues.put("getWorld", 301);
+		clientValues.put("getTickCount", 0);
+		clientValues.put("getVarbitValue", 1 << LAMP.getBitPosition());
+
+		statsTracker = new DKLampsStatsTracker();
+		stateManager = new DKLampsStateManager(fake(Client.class, clientValues), statsTracker,
+			new WorldLampCache(new File(System.getProperty("java.io.tmpdir"), "dklamps-state-test.dat"), Runnable::run));
+
+		assertEquals(LAMP.getArea(), DKLampsHelper.getArea(LAMP.getWorldPoint()));
+		stateManager.onGameStateChanged(GameState.LOGGED_IN);
+		tick();
+		tick();
+		assertEquals(LampStateMask.bit(LAMP), stateManager.getBrokenLamps());
+	}
+
+	@Test
+	public void lampGoingOutOfTheVarbitCountsAsFixed()
+	{
+		VarbitChanged varbitChanged = new VarbitChanged();
+		varbitChanged.setVarbitId(DKLampsConstants.DORGESHKAAN_LAMPS_VARBIT);
+		varbitChanged.setValue(0);
+		stateManager.onVarbitChanged(varbitChanged);
+		tick();
+
+		assertEquals(1, statsTracker.getLampsFixed());
+	}
+
+	@Test
+	public void hoppingInPlaceDoesNotCountTheOldWorldsLampsAsFixed()
+	{
+		stateManager.onGameStateChanged(GameState.HOPPING);
+		clientValues.put("getWorld", 302);
+		clientValues.put("getVarbitValue", 0);
+		stateManager.onGameStateChanged(GameState.LOGGED_IN);
+		tick();
+		tick();
+
+		assertEquals(0L, stateManager.getBrokenLamps());
+		assertEquals(0, statsTracker.getLampsFixed());
+	}
+
+	@Test
+	public void relogInPlaceDoesNotCountTheOldWorldsLampsAsFixed()
+	{
+		stateManager.onGameStateChanged(GameState.LOGIN_SCREEN);
+		clientValues.put("getVarbitValue", 0);
+		stateManager.onGameStateChanged(GameState.LOGGED_IN);
+		tick();
+		tick();
+
+		assertEquals(0, statsTracker.getLampsFixed());
+	}
+
+	private void tick()
+	{
+		clientValues.put("getTickCount", (int) clientValues.get("getTickCount") + 1);
+		stateManager.onGameTick();
+	}
+
+	/**
+	 * Interface implementation answering from a table of method names, with zero, false or
+	 * {@code null} for everything else.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T fake(Class<T> type, Map<String, Object> values)
+	{
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return type.getSimpleName();
+			}
+
+			Object value = values.get(method.getName());
+			if (value != null)
+			{
+				return value;
+			}
+			Class<?> returnType = method.getReturnType();
+			if (returnType == boolean.class)
+			{
+				return false;
+			}
+			if (returnType == int.class)
+			{
+				return 0;
+			}
+			if (returnType == long.class)
+			{
+				return 0L;
+			}
+			return null;
+		});
+	}
+}
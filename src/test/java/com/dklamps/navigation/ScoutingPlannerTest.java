@@ -0,0 +1,125 @@
+package com.dklamps.navigation;
+
+import com.dklamps.DKLampsHelper;
+import com.dklamps.enums.Area;
+import com.dklamps.enums.Lamp;
+import com.dklamps.pathfinder.Pathfinder;
+import com.dklamps.state.LampStateMask;
+import com.dklamps.stats.BreakModel;
+import java.io.IOException;
+import java.util.List;
+import net.runelite.api.coords.WorldPoint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ScoutingPlannerTest
+{
+	// In P0_N, where the P0_S boundary is closer than any P2_N lamp but every P0_S lamp is further
+	private static final WorldPoint START = new WorldPoint(2746, 5326, 0);
+	private static final WorldPoint[] STARTS = {
+		START,
+		new WorldPoint(2739, 5324, 0),
+		new WorldPoint(2741, 5283, 0),
+		new WorldPoint(2695, 5302, 0),
+		new WorldPoint(2698, 5260, 0),
+	};
+
+	@Test
+	public void nearerAreaBoundaryBehindFartherLampDoesNotWin() throws IOException
+	{
+		Pathfinder pathfinder = new Pathfinder();
+		BreakModel breakModel = new BreakModel();
+		// One unknown lamp in each, so both areas resolve the same weight
+		long unknownLamps = Long.lowestOneBit(LampStateMask.areaMask(Area.P0_S))
+			| Long.lowestOneBit(LampStateMask.areaMask(Area.P2_N));
+
+		assertTrue(boundaryPathSize(pathfinder, START, Area.P0_S) < closestLampPathSize(pathfinder, START, Area.P2_N));
+		assertTrue(closestLampPathSize(pathfinder, START, Area.P0_S) > closestLampPathSize(pathfinder, START, Area.P2_N));
+
+		ScoutingPlanner.Plan plan = new ScoutingPlanner(pathfinder, breakModel).plan(START, unknownLamps, () -> false);
+		assertNotNull(plan);
+		assertEquals(bestArea(pathfinder, breakModel, START, unknownLamps), plan.getArea());
+		assertEquals(Area.P2_N, plan.getArea());
+	}
+
+	@Test
+	public void planMatchesExhaustiveSearch() throws IOException
+	{
+		Pathfinder pathfinder = new Pathfinder();
+		BreakModel breakModel = new BreakModel();
+		ScoutingPlanner planner = new ScoutingPlanner(pathfinder, breakModel);
+		long unknownLamps = LampStateMask.ALL_LAMPS;
+
+		for (WorldPoint start : STARTS)
+		{
+			ScoutingPlanner.Plan plan = planner.plan(start, unknownLamps, () -> false);
+			assertNotNull("no plan from " + start, plan);
+			assertEquals("from " + start, score(pathfinder, breakModel, start, unknownLamps, bestArea(pathfinder, breakModel, start, unknownLamps)),
+				score(pathfinder, breakModel, start, unknownLamps, plan.getArea()), 1e-9);
+			assertEquals(plan.getArea(), DKLampsHelper.getArea(plan.getPath().get(plan.getPath().size() - 1)));
+		}
+	}
+
+	private static Area bestArea(Pathfinder pathfinder, BreakModel breakModel, WorldPoint start, long unknownLamps)
+	{
+		Area best = null;
+		double bestScore = 0;
+		for (Area area : Area.values())
+		{
+			double score = score(pathfinder, breakModel, start, unknownLamps, area);
+			if (score > bestScore)
+			{
+				bestScore = score;
+				best = area;
+			}
+		}
+		return best;
+	}
+
+	private static double score(Pathfinder pathfinder, BreakModel breakModel, WorldPoint start, long unknownLamps, Area area)
+	{
+		long resolved = unknownLamps & LampStateMask.observedMask(area);
+		int pathSize = closestLampPathSize(pathfinder, start, area);
+		if (area == DKLampsHelper.getArea(start) || resolved == 0 || pathSize == Integer.MAX_VALUE)
+		{
+			return 0;
+		}
+		return breakModel.getWeight(resolved) / pathSize;
+	}
+
+	private static int closestLampPathSize(Pathfinder pathfinder, WorldPoint start, Area area)
+	{
+		int closest = Integer.MAX_VALUE;
+		for (long lamps = LampStateMask.areaMask(area); lamps != 0; lamps &= lamps - 1)
+		{
+			Lamp lamp = LampStateMask.lamp(Long.numberOfTrailingZeros(lamps));
+			List<WorldPoint> path = pathfinder.findPath(start, lamp.getWorldPoint());
+			if (path != null && !path.isEmpty())
+			{
+				closest = Math.min(closest, path.size());
+			}
+		}
+		return closest;
+	}
+
+	private static int boundaryPathSize(Pathfinder pathfinder, WorldPoint start, Area area)
+	{
+		int closest = Integer.MAX_VALUE;
+		for (long lamps = LampStateMask.areaMask(area); lamps != 0; lamps &= lamps - 1)
+		{
+			Lamp lamp = LampStateMask.lamp(Long.numberOfTrailingZeros(lamps));
+			List<WorldPoint> path = pathfinder.findPath(start, lamp.getWorldPoint());
+			for (int i = 0; path != null && i < path.size(); i++)
+			{
+				if (DKLampsHelper.getArea(path.get(i)) == area)
+				{
+					closest = Math.min(closest, i + 1);
+					break;
+				}
+			}
+		}
+		return closest;
+	}
+}
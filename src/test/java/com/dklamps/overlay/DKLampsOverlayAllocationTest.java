@@ -0,0 +1,346 @@
+package com.dklamps.overlay;
+
+import com.dklamps.DKLampsConfig;
+import com.dklamps.DKLampsConstants;
+import com.dklamps.DKLampsNavigationManager;
+import com.dklamps.DKLampsPlugin;
+import com.dklamps.DKLampsStateManager;
+import com.dklamps.DKLampsStatsTracker;
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.TargetType;
+import com.dklamps.enums.TimerType;
+import com.dklamps.navigation.NavigationSnapshot;
+import com.dklamps.state.WorldLampCache;
+import java.awt.Color;
+import java.awt.Polygon;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.runelite.api.Client;
+import net.runelite.api.GameObject;
+import net.runelite.api.Player;
+import net.runelite.api.Point;
+import net.runelite.api.Scene;
+import net.runelite.api.WallObject;
+import net.runelite.api.WorldView;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.client.ui.overlay.outline.ModelOutlineRenderer;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+
+/**
+ * Renders the overlay many times over an unchanging scene and fails when the steady-state frames
+ * allocate more than {@link #MAX_BYTES_PER_FRAME}. The budget leaves room for the few objects the
+ * RuneLite API itself returns per frame (canvas points), but not for per-frame collections,
+ * colours or formatted strings.
+ */
+public class DKLampsOverlayAllocationTest
+{
+	private static final int WARMUP_FRAMES = 20_000;
+	private static final int MEASURED_FRAMES = 20_000;
+	private static final long MAX_BYTES_PER_FRAME = 256;
+
+	private static final int TICK = 100;
+	private static final int BASE_X = 2664;
+	private static final int BASE_Y = 5224;
+	private static final int PATH_Y = 5276;
+	private static final WorldPoint PLAYER_LOCATION = new WorldPoint(2700, PATH_Y, 0);
+	private static final WorldPoint DOOR_LOCATION = new WorldPoint(2720, PATH_Y, 0);
+
+	@Test
+	public void secondsTimerFrameStaysWithinBudget() throws Exception
+	{
+		assertFrameBudget(TimerType.SECONDS);
+	}
+
+	@Test
+	public void ticksTimerFrameStaysWithinBudget() throws Exception
+	{
+		assertFrameBudget(TimerType.TICKS);
+	}
+
+	private void assertFrameBudget(TimerType timerType) throws Exception
+	{
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		DKLampsOverlay overlay = createOverlay(timerType);
+		NullGraphics2D graphics = new NullGraphics2D();
+
+		for (int i = 0; i < WARMUP_FRAMES; i++)
+		{
+			overlay.render(graphics);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < MEASURED_FRAMES; i++)
+		{
+			overlay.render(graphics);
+		}
+		long bytesPerFrame = (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_FRAMES;
+
+		assertTrue("Overlay allocated " + bytesPerFrame + " bytes per frame with the " + timerType
+			+ " timer, budget is " + MAX_BYTES_PER_FRAME, bytesPerFrame <= MAX_BYTES_PER_FRAME);
+	}
+
+	private static DKLampsOverlay createOverlay(TimerType timerType) throws Exception
+	{
+		DKLampsConfig config = new DKLampsConfig()
+		{
+			@Override
+			public boolean highlightAllLamps()
+			{
+				return true;
+			}
+
+			@Override
+			public boolean highlightOtherPlanesLamps()
+			{
+				return true;
+			}
+
+			@Override
+			public boolean darkenOtherPlanesLamps()
+			{
+				return true;
+			}
+
+			@Override
+			public TimerType timerType()
+			{
+				return timerType;
+			}
+
+			// The real config manager caches values, these defaults would create a colour per call
+			@Override
+			public Color pathColor()
+			{
+				return Color.PINK;
+			}
+
+			@Override
+			public Color utilityPathColor()
+			{
+				return Color.GREEN;
+			}
+
+			@Override
+			public Color informativeStairColor()
+			{
+				return Color.MAGENTA;
+			}
+		};
+
+		Client client = createClient();
+		DKLampsStateManager stateManager = new DKLampsStateManager(client, new DKLampsStatsTracker(),
+			new WorldLampCache(new File(System.getProperty("java.io.tmpdir"), "dklamps-allocation-test.dat"), Runnable::run));
+		for (Lamp lamp : Lamp.values())
+		{
+			stateManager.onGameObjectSpawned(fake(GameObject.class, tileObject(lamp.getObjectId(), lamp.getWorldPoint())));
+		}
+		stateManager.onWallObjectSpawned(fake(WallObject.class,
+			tileObject(DKLampsConstants.DOOR_IDS.iterator().next(), DOOR_LOCATION)));
+		stateManager.onGameObjectSpawned(fake(GameObject.class,
+			tileObject(DKLampsConstants.WIRE_MACHINE_INACTIVE, DKLampsConstants.WIRE_MACHINE_LOCATION)));
+
+		List<WorldPoint> path = new ArrayList<>();
+		for (int x = PLAYER_LOCATION.getX(); x < PLAYER_LOCATION.getX() + 60; x++)
+		{
+			path.add(new WorldPoint(x, PATH_Y, 0));
+		}
+		NavigationSnapshot snapshot = new NavigationSnapshot(1, TICK, TargetType.LAMP, Lamp.P0_S_LAMP_1,
+			Collections.unmodifiableList(path), path.size());
+
+		DKLampsNavigationManager navigationManager = new DKLampsNavigationManager(client, config, null, null, null)
+		{
+			@Override
+			public NavigationSnapshot getSnapshot()
+			{
+				return snapshot;
+			}
+
+			@Override
+			public TargetType getCurrentTargetType()
+			{
+				return TargetType.LAMP;
+			}
+		};
+
+		Instant lastTick = Instant.now().minusSeconds(1);
+		DKLampsPlugin plugin = new DKLampsPlugin()
+		{
+			@Override
+			public DKLampsStateManager getStateManager()
+			{
+				return stateManager;
+			}
+
+			@Override
+			public DKLampsNavigationManager getNavigationManager()
+			{
+				return navigationManager;
+			}
+
+			@Override
+			public Instant getLastTickInstant()
+			{
+				return lastTick;
+			}
+		};
+
+		Constructor<DKLampsOverlay> constructor = DKLampsOverlay.class.getDeclaredConstructor(Client.class,
+			DKLampsPlugin.class, DKLampsConfig.class, ModelOutlineRenderer.class);
+		constructor.setAccessible(true);
+		return constructor.newInstance(client, plugin, config, null);
+	}
+
+	private static Client createClient()
+	{
+		int wireLocalX = (DKLampsConstants.WIRE_MACHINE_LOCATION.getX() - BASE_X) * 128 + 64;
+		int wireLocalY = (DKLampsConstants.WIRE_MACHINE_LOCATION.getY() - BASE_Y) * 128 + 64;
+
+		Scene scene = fake(Scene.class, new HashMap<>());
+
+		Map<String, Object> worldView = new HashMap<>();
+		worldView.put("getId", -1);
+		worldView.put("getPlane", 0);
+		worldView.put("getBaseX", BASE_X);
+		worldView.put("getBaseY", BASE_Y);
+		worldView.put("getScene", scene);
+		WorldView topLevel = fake(WorldView.class, worldView);
+
+		Map<String, Object> player = new HashMap<>();
+		player.put("getWorldLocation", PLAYER_LOCATION);
+
+		// Camera behind the wire machine looking north, so it and the nearby path project on screen
+		Map<String, Object> client = new HashMap<>();
+		client.put("getLocalPlayer", fake(Player.class, player));
+		client.put("getTopLevelWorldView", topLevel);
+		client.put("getWorldView", topLevel);
+		client.put("getScene", scene);
+		client.put("getPlane", 0);
+		client.put("getTickCount", TICK);
+		client.put("getMouseCanvasPosition", new Point(0, 0));
+		client.put("getCameraX", wireLocalX);
+		client.put("getCameraY", wireLocalY - 1500);
+		client.put("getCameraZ", -800);
+		client.put("getCameraFpX", (double) wireLocalX);
+		client.put("getCameraFpY", (double) (wireLocalY - 1500));
+		client.put("getCameraFpZ", -800.0);
+		client.put("getScale", 512);
+		client.put("getViewportWidth", 765);
+		client.put("getViewportHeight", 503);
+		return fake(Client.class, client);
+	}
+
+	private static Map<String, Object> tileObject(int id, WorldPoint location)
+	{
+		int[] xs = {0, 10, 10, 0};
+		int[] ys = {0, 0, 10, 10};
+
+		Map<String, Object> values = new HashMap<>();
+		values.put("getId", id);
+		values.put("getWorldLocation", location);
+		values.put("getPlane", location.getPlane());
+		values.put("getClickbox", new Polygon(xs, ys, xs.length));
+		return values;
+	}
+
+	/**
+	 * Interface implementation answering from a fixed table of method names, with zero, false,
+	 * zero-filled arrays or {@code null} for everything else. Every answer is created up front, so
+	 * calling it allocates nothing beyond the proxy's argument array.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T fake(Class<T> type, Map<String, Object> values)
+	{
+		Map<Class<?>, Object> defaults = new HashMap<>();
+		InvocationHandler handler = (proxy, method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "equals":
+					return proxy == args[0];
+				case "toString":
+					return type.getSimpleName();
+			}
+
+			Object value = values.get(method.getName());
+			if (value != null)
+			{
+				return value;
+			}
+			return defaults.computeIfAbsent(method.getReturnType(), DKLampsOverlayAllocationTest::defaultValue);
+		};
+
+		T fake = (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+		values.put("hashCode", System.identityHashCode(fake));
+		return fake;
+	}
+
+	private static Object defaultValue(Class<?> type)
+	{
+		if (type == boolean.class)
+		{
+			return Boolean.FALSE;
+		}
+		if (type == int.class)
+		{
+			return 0;
+		}
+		if (type == long.class)
+		{
+			return 0L;
+		}
+		if (type == double.class)
+		{
+			return 0.0;
+		}
+		if (type == float.class)
+		{
+			return 0.0f;
+		}
+		if (type == short.class)
+		{
+			return (short) 0;
+		}
+		if (type == byte.class)
+		{
+			return (byte) 0;
+		}
+		if (type == char.class)
+		{
+			return (char) 0;
+		}
+		if (type.isArray())
+		{
+			// Scene sized on every axis, with four planes for the three dimensional tile arrays
+			Class<?> component = type;
+			int dimensions = 0;
+			while (component.isArray())
+			{
+				component = component.getComponentType();
+				dimensions++;
+			}
+			int[] lengths = new int[dimensions];
+			for (int i = 0; i < dimensions; i++)
+			{
+				lengths[i] = dimensions == 3 && i == 0 ? 4 : 256;
+			}
+			return Array.newInstance(component, lengths);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,435 @@
+package com.dklamps.overlay;
+
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+
+/**
+ * Graphics that draws nothing and allocates nothing, so allocation measurements of an overlay
+ * only see the overlay's own work and not Java2D's rasterisation.
+ */
+class NullGraphics2D extends Graphics2D
+{
+	private static final Font FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+	private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, false, false);
+	private static final FontMetrics FONT_METRICS = new FontMetrics(FONT)
+	{
+		@Override
+		public int stringWidth(String str)
+		{
+			return 0;
+		}
+	};
+
+	private final AffineTransform transform = new AffineTransform();
+	private final RenderingHints hints = new RenderingHints(null);
+	private Color color = Color.BLACK;
+	private Paint paint = Color.BLACK;
+	private Color background = Color.BLACK;
+	private Stroke stroke;
+	private Composite composite;
+	private Font font = FONT;
+	private Shape clip;
+
+	@Override
+	public void draw(Shape s)
+	{
+	}
+
+	@Override
+	public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs)
+	{
+		return true;
+	}
+
+	@Override
+	public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y)
+	{
+	}
+
+	@Override
+	public void drawRenderedImage(RenderedImage img, AffineTransform xform)
+	{
+	}
+
+	@Override
+	public void drawRenderableImage(RenderableImage img, AffineTransform xform)
+	{
+	}
+
+	@Override
+	public void drawString(String str, int x, int y)
+	{
+	}
+
+	@Override
+	public void drawString(String str, float x, float y)
+	{
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, int x, int y)
+	{
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, float x, float y)
+	{
+	}
+
+	@Override
+	public void drawGlyphVector(GlyphVector g, float x, float y)
+	{
+	}
+
+	@Override
+	public void fill(Shape s)
+	{
+	}
+
+	@Override
+	public boolean hit(Rectangle rect, Shape s, boolean onStroke)
+	{
+		return false;
+	}
+
+	@Override
+	public GraphicsConfiguration getDeviceConfiguration()
+	{
+		return null;
+	}
+
+	@Override
+	public void setComposite(Composite comp)
+	{
+		composite = comp;
+	}
+
+	@Override
+	public void setPaint(Paint paint)
+	{
+		this.paint = paint;
+	}
+
+	@Override
+	public void setStroke(Stroke s)
+	{
+		stroke = s;
+	}
+
+	@Override
+	public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue)
+	{
+	}
+
+	@Override
+	public Object getRenderingHint(RenderingHints.Key hintKey)
+	{
+		return null;
+	}
+
+	@Override
+	public void setRenderingHints(Map<?, ?> hints)
+	{
+	}
+
+	@Override
+	public void addRenderingHints(Map<?, ?> hints)
+	{
+	}
+
+	@Override
+	public RenderingHints getRenderingHints()
+	{
+		return hints;
+	}
+
+	@Override
+	public void translate(int x, int y)
+	{
+	}
+
+	@Override
+	public void translate(double tx, double ty)
+	{
+	}
+
+	@Override
+	public void rotate(double theta)
+	{
+	}
+
+	@Override
+	public void rotate(double theta, double x, double y)
+	{
+	}
+
+	@Override
+	public void scale(double sx, double sy)
+	{
+	}
+
+	@Override
+	public void shear(double shx, double shy)
+	{
+	}
+
+	@Override
+	public void transform(AffineTransform tx)
+	{
+	}
+
+	@Override
+	public void setTransform(AffineTransform tx)
+	{
+	}
+
+	@Override
+	public AffineTransform getTransform()
+	{
+		return transform;
+	}
+
+	@Override
+	public Paint getPaint()
+	{
+		return paint;
+	}
+
+	@Override
+	public Composite getComposite()
+	{
+		return composite;
+	}
+
+	@Override
+	public void setBackground(Color color)
+	{
+		background = color;
+	}
+
+	@Override
+	public Color getBackground()
+	{
+		return background;
+	}
+
+	@Override
+	public Stroke getStroke()
+	{
+		return stroke;
+	}
+
+	@Override
+	public void clip(Shape s)
+	{
+	}
+
+	@Override
+	public FontRenderContext getFontRenderContext()
+	{
+		return FONT_RENDER_CONTEXT;
+	}
+
+	@Override
+	public Graphics create()
+	{
+		return this;
+	}
+
+	@Override
+	public Color getColor()
+	{
+		return color;
+	}
+
+	@Override
+	public void setColor(Color c)
+	{
+		color = c;
+	}
+
+	@Override
+	public void setPaintMode()
+	{
+	}
+
+	@Override
+	public void setXORMode(Color c1)
+	{
+	}
+
+	@Override
+	public Font getFont()
+	{
+		return font;
+	}
+
+	@Override
+	public void setFont(Font font)
+	{
+		this.font = font;
+	}
+
+	@Override
+	public FontMetrics getFontMetrics(Font f)
+	{
+		return FONT_METRICS;
+	}
+
+	@Override
+	public Rectangle getClipBounds()
+	{
+		return null;
+	}
+
+	@Override
+	public void clipRect(int x, int y, int width, int height)
+	{
+	}
+
+	@Override
+	public void setClip(int x, int y, int width, int height)
+	{
+	}
+
+	@Override
+	public Shape getClip()
+	{
+		return clip;
+	}
+
+	@Override
+	public void setClip(Shape clip)
+	{
+		this.clip = clip;
+	}
+
+	@Override
+	public void copyArea(int x, int y, int width, int height, int dx, int dy)
+	{
+	}
+
+	@Override
+	public void drawLine(int x1, int y1, int x2, int y2)
+	{
+	}
+
+	@Override
+	public void fillRect(int x, int y, int width, int height)
+	{
+	}
+
+	@Override
+	public void clearRect(int x, int y, int width, int height)
+	{
+	}
+
+	@Override
+	public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight)
+	{
+	}
+
+	@Override
+	public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight)
+	{
+	}
+
+	@Override
+	public void drawOval(int x, int y, int width, int height)
+	{
+	}
+
+	@Override
+	public void fillOval(int x, int y, int width, int height)
+	{
+	}
+
+	@Override
+	public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle)
+	{
+	}
+
+	@Override
+	public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle)
+	{
+	}
+
+	@Override
+	public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints)
+	{
+	}
+
+	@Override
+	public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints)
+	{
+	}
+
+	@Override
+	public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints)
+	{
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, ImageObserver observer)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
+		ImageObserver observer)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
+		Color bgcolor, ImageObserver observer)
+	{
+		return true;
+	}
+
+	@Override
+	public void dispose()
+	{
+	}
+}
@@ -0,0 +1,196 @@
+package com.dklamps.state;
+
+import com.dklamps.DKLampsConstants;
+import com.dklamps.DKLampsHelper;
+import com.dklamps.enums.Area;
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.LampStatus;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class LampKnowledgeEngineTest
+{
+	private static final Area AREA = Area.P0_S;
+
+	@Test
+	public void tenKnownBrokenLampsMakeEveryOtherLampWorking()
+	{
+		long broken = firstLamps(LampStateMask.ALL_LAMPS, DKLampsConstants.TOTAL_BROKEN_LAMPS);
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		engine.observe(broken, broken);
+
+		LampStateMask state = engine.propagate();
+		assertEquals(broken, state.getBroken());
+		assertEquals(LampStateMask.ALL_LAMPS & ~broken, state.getWorking());
+		assertEquals(0L, state.getUnknown());
+	}
+
+	@Test
+	public void lastTenLampsThatCanBeBrokenAreBroken()
+	{
+		long broken = firstLamps(LampStateMask.ALL_LAMPS, DKLampsConstants.TOTAL_BROKEN_LAMPS);
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		engine.observe(LampStateMask.ALL_LAMPS & ~broken, 0L);
+
+		LampStateMask state = engine.propagate();
+		assertEquals(broken, state.getBroken());
+		assertEquals(0L, state.getUnknown());
+	}
+
+	@Test
+	public void fewerThanTenKnownBrokenLampsLeaveTheRestUnknown()
+	{
+		long broken = firstLamps(LampStateMask.ALL_LAMPS, DKLampsConstants.TOTAL_BROKEN_LAMPS - 1);
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		engine.observe(broken, broken);
+
+		LampStateMask state = engine.propagate();
+		assertEquals(broken, state.getBroken());
+		assertEquals(0L, state.getWorking());
+		assertEquals(LampStateMask.ALL_LAMPS & ~broken, state.getUnknown());
+	}
+
+	@Test
+	public void sharedBitIsTheCurrentAreasLamp()
+	{
+		Lamp own = null;
+		Lamp hidden = null;
+		for (Lamp lamp : Lamp.values())
+		{
+			if (lamp.getArea() != AREA.getOpposite())
+			{
+				continue;
+			}
+			for (Lamp candidate : Lamp.values())
+			{
+				if (candidate.getArea() == AREA && candidate.getBitPosition() == lamp.getBitPosition())
+				{
+					own = candidate;
+					hidden = lamp;
+				}
+			}
+		}
+		assertTrue("no bit is shared between " + AREA + " and its opposite area", own != null);
+
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		observeVarbit(engine, 1 << own.getBitPosition());
+
+		LampStateMask state = engine.propagate();
+		assertEquals(LampStatus.BROKEN, state.getStatus(own));
+		assertEquals(LampStatus.UNKNOWN, state.getStatus(hidden));
+		assertEquals(LampStateMask.observedMask(AREA) & ~LampStateMask.bit(own), state.getWorking());
+	}
+
+	@Test
+	public void oppositeLampOnUnusedBitIsObserved()
+	{
+		long oppositeLamps = LampStateMask.validOppositeMask(AREA);
+		assertTrue("no opposite lamp is visible from " + AREA, oppositeLamps != 0);
+		Lamp opposite = LampStateMask.lamp(Long.numberOfTrailingZeros(oppositeLamps));
+
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		observeVarbit(engine, 1 << opposite.getBitPosition());
+
+		assertEquals(LampStatus.BROKEN, engine.propagate().getStatus(opposite));
+	}
+
+	@Test
+	public void hintWithOneCandidateLeftMarksItBroken()
+	{
+		long candidates = firstLamps(LampStateMask.ALL_LAMPS, 2);
+		long first = Long.lowestOneBit(candidates);
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		engine.addBrokenHint(candidates, 10);
+		engine.observe(first, 0L);
+
+		LampStateMask state = engine.propagate();
+		assertEquals(candidates & ~first, state.getBroken());
+		assertEquals(first, state.getWorking());
+	}
+
+	@Test
+	public void hintWithSeveralCandidatesLeftDecidesNothing()
+	{
+		long candidates = firstLamps(LampStateMask.ALL_LAMPS, 3);
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		engine.addBrokenHint(candidates, 10);
+		engine.observe(Long.lowestOneBit(candidates), 0L);
+
+		assertEquals(0L, engine.propagate().getBroken());
+	}
+
+	@Test
+	public void contradictedHintIsDropped()
+	{
+		long candidates = firstLamps(LampStateMask.ALL_LAMPS, 2);
+		long first = Long.lowestOneBit(candidates);
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		engine.addBrokenHint(candidates, 10);
+		engine.observe(candidates, 0L);
+		assertEquals(0L, engine.propagate().getBroken());
+
+		// Only the first candidate may be broken again, which the dropped hint would have forced
+		engine.onLampFixed(LampStateMask.ALL_LAMPS & ~first, 10);
+		LampStateMask state = engine.propagate();
+		assertEquals(0L, state.getBroken());
+		assertEquals(first, state.getUnknown() & candidates);
+	}
+
+	@Test
+	public void hintsFromBeforeTheLastFixAreDropped()
+	{
+		long candidates = firstLamps(LampStateMask.ALL_LAMPS, 2);
+		long first = Long.lowestOneBit(candidates);
+
+		LampKnowledgeEngine stale = new LampKnowledgeEngine();
+		stale.addBrokenHint(candidates, 10);
+		stale.onLampFixed(0L, 20);
+		stale.observe(first, 0L);
+		assertEquals(0L, stale.propagate().getBroken());
+
+		LampKnowledgeEngine recent = new LampKnowledgeEngine();
+		recent.addBrokenHint(candidates, 19);
+		recent.onLampFixed(0L, 20);
+		recent.observe(first, 0L);
+		assertEquals(candidates & ~first, recent.propagate().getBroken());
+	}
+
+	@Test
+	public void fixMakesWorkingLampsOutOfViewUnknown()
+	{
+		long visible = LampStateMask.areaMask(AREA) | LampStateMask.areaMask(AREA.getOpposite());
+		long fixed = Long.lowestOneBit(LampStateMask.areaMask(AREA));
+		long broken = fixed | firstLamps(LampStateMask.ALL_LAMPS & ~fixed, DKLampsConstants.TOTAL_BROKEN_LAMPS - 1);
+		long outOfViewWorking = LampStateMask.ALL_LAMPS & ~visible & ~broken;
+
+		LampKnowledgeEngine engine = new LampKnowledgeEngine();
+		engine.observe(LampStateMask.ALL_LAMPS, broken);
+		assertEquals(0L, engine.propagate().getUnknown());
+
+		engine.onLampFixed(visible, 20);
+		long observed = LampStateMask.observedMask(AREA);
+		engine.observe(observed, broken & ~fixed & observed);
+
+		LampStateMask state = engine.propagate();
+		assertEquals(LampStatus.WORKING, state.getStatus(LampStateMask.lamp(Long.numberOfTrailingZeros(fixed))));
+		assertEquals(broken & ~fixed, state.getBroken());
+		assertEquals(outOfViewWorking, state.getUnknown() & outOfViewWorking);
+		assertTrue(outOfViewWorking != 0);
+	}
+
+	private static void observeVarbit(LampKnowledgeEngine engine, int varbit)
+	{
+		engine.observe(LampStateMask.observedMask(AREA), DKLampsHelper.getBrokenLamps(varbit, AREA));
+	}
+
+	private static long firstLamps(long from, int count)
+	{
+		long lamps = 0L;
+		for (long remaining = from; remaining != 0 && Long.bitCount(lamps) < count; remaining &= remaining - 1)
+		{
+			lamps |= Long.lowestOneBit(remaining);
+		}
+		return lamps;
+	}
+}
@@ -0,0 +1,110 @@
+package com.dklamps.state;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import net.runelite.api.GameObject;
+import net.runelite.api.coords.WorldPoint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SceneObjectIndexTest
+{
+	@Test
+	public void addedObjectsAreFoundByTileAndPlane()
+	{
+		SceneObjectIndex<GameObject> index = new SceneObjectIndex<>();
+		GameObject ground = object(2700, 5300, 0);
+		GameObject upstairs = object(2700, 5300, 1);
+		index.add(ground);
+		index.add(upstairs);
+
+		assertSame(ground, index.get(new WorldPoint(2700, 5300, 0)));
+		assertSame(upstairs, index.get(new WorldPoint(2700, 5300, 1)));
+		assertEquals(Collections.singletonList(ground), index.getOnPlane(0));
+		assertEquals(Collections.singletonList(upstairs), index.getOnPlane(1));
+		assertTrue(index.getOnPlane(SceneObjectIndex.PLANES).isEmpty());
+	}
+
+	@Test
+	public void respawnOnTheSameTileReplacesTheOldObject()
+	{
+		SceneObjectIndex<GameObject> index = new SceneObjectIndex<>();
+		GameObject first = object(2700, 5300, 0);
+		GameObject second = object(2700, 5300, 0);
+		index.add(first);
+		index.add(second);
+
+		assertSame(second, index.get(new WorldPoint(2700, 5300, 0)));
+		assertEquals(Collections.singletonList(second), index.getOnPlane(0));
+		assertFalse(index.contains(first));
+	}
+
+	@Test
+	public void lateDespawnOfAReplacedObjectKeepsItsReplacement()
+	{
+		SceneObjectIndex<GameObject> index = new SceneObjectIndex<>();
+		GameObject first = object(2700, 5300, 0);
+		GameObject second = object(2700, 5300, 0);
+		index.add(first);
+		index.add(second);
+		int version = index.getVersion();
+
+		index.remove(first);
+		assertSame(second, index.get(new WorldPoint(2700, 5300, 0)));
+		assertEquals(Collections.singletonList(second), index.getOnPlane(0));
+		assertEquals(version, index.getVersion());
+
+		index.remove(second);
+		assertNull(index.get(new WorldPoint(2700, 5300, 0)));
+		assertTrue(index.getOnPlane(0).isEmpty());
+		assertTrue(index.isEmpty());
+	}
+
+	@Test
+	public void nearestOnlyLooksAtThePlayersPlaneAndMatchingObjects()
+	{
+		SceneObjectIndex<GameObject> index = new SceneObjectIndex<>();
+		GameObject near = object(2702, 5301, 0);
+		GameObject far = object(2710, 5300, 0);
+		GameObject otherPlane = object(2700, 5300, 1);
+		for (GameObject object : Arrays.asList(near, far, otherPlane))
+		{
+			index.add(object);
+		}
+
+		WorldPoint from = new WorldPoint(2700, 5300, 0);
+		assertSame(near, index.nearest(from, object -> true));
+		assertSame(far, index.nearest(from, object -> object != near));
+		assertNull(index.nearest(from, object -> false));
+		assertSame(otherPlane, index.nearest(new WorldPoint(2710, 5300, 1), object -> true));
+	}
+
+	private static GameObject object(int x, int y, int plane)
+	{
+		WorldPoint location = new WorldPoint(x, y, plane);
+		return (GameObject) Proxy.newProxyInstance(GameObject.class.getClassLoader(), new Class<?>[]{GameObject.class},
+			(proxy, method, args) ->
+			{
+				switch (method.getName())
+				{
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "toString":
+						return "GameObject" + location;
+					case "getWorldLocation":
+						return location;
+					case "getPlane":
+						return plane;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+}
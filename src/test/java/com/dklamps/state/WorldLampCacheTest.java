@@ -0,0 +1,65 @@
+package com.dklamps.state;
+
+import com.dklamps.enums.Area;
+import java.io.File;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class WorldLampCacheTest
+{
+	private static final int WORLD = 302;
+	private static final long MINUTE = 60 * 1000L;
+
+	private final WorldLampCache cache = new WorldLampCache(
+		new File(System.getProperty("java.io.tmpdir"), "dklamps-world-cache-test.dat"), Runnable::run);
+
+	@Test
+	public void partialDecodeKeepsUnseenStaleLampsWithTheirOriginalTime()
+	{
+		long south = LampStateMask.areaMask(Area.P0_S);
+		long southBroken = Long.lowestOneBit(south);
+		long elsewhereBroken = Long.lowestOneBit(LampStateMask.ALL_LAMPS & ~south);
+		cache.put(WORLD, 0, 0L, LampStateMask.of(southBroken | elsewhereBroken, 0L), null);
+
+		WorldLampCache.Entry restored = cache.get(WORLD, 20 * MINUTE);
+		// Back on the world, only the south area has been decoded and its lamp was fixed meanwhile
+		cache.put(WORLD, 100, 20 * MINUTE, LampStateMask.of(0L, south), restored);
+
+		WorldLampCache.Entry entry = cache.get(WORLD, 20 * MINUTE);
+		assertEquals(0L, entry.getBroken());
+		assertEquals(elsewhereBroken, entry.getCarriedBroken());
+		assertEquals(0L, entry.getCarriedAtMillis());
+		assertEquals(0.25, entry.confidence(elsewhereBroken, 20 * MINUTE), 1e-9);
+	}
+
+	@Test
+	public void carriedLampsKeepTheOldestTimeAcrossRoundTrips()
+	{
+		long first = LampStateMask.bit(LampStateMask.lamp(0));
+		long second = LampStateMask.bit(LampStateMask.lamp(1));
+		cache.put(WORLD, 0, 0L, LampStateMask.of(first, 0L), null);
+
+		WorldLampCache.Entry restored = cache.get(WORLD, 10 * MINUTE);
+		cache.put(WORLD, 100, 10 * MINUTE, LampStateMask.of(second, 0L), restored);
+
+		restored = cache.get(WORLD, 20 * MINUTE);
+		cache.put(WORLD, 200, 20 * MINUTE, LampStateMask.of(0L, second), restored);
+
+		WorldLampCache.Entry entry = cache.get(WORLD, 20 * MINUTE);
+		assertEquals(first, entry.getCarriedBroken());
+		assertEquals(0L, entry.getCarriedAtMillis());
+		assertEquals(0L, entry.getBroken(20 * MINUTE, 0.5));
+	}
+
+	@Test
+	public void worldWithoutBrokenLampsIsForgotten()
+	{
+		long lamp = LampStateMask.bit(LampStateMask.lamp(0));
+		cache.put(WORLD, 0, 0L, LampStateMask.of(lamp, 0L), null);
+		WorldLampCache.Entry restored = cache.get(WORLD, MINUTE);
+		cache.put(WORLD, 100, MINUTE, LampStateMask.of(0L, lamp), restored);
+
+		assertNull(cache.get(WORLD, MINUTE));
+	}
+}
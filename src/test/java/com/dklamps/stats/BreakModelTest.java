@@ -0,0 +1,55 @@
+package com.dklamps.stats;
+
+import com.dklamps.enums.Lamp;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class BreakModelTest
+{
+	private static final Lamp FIRST_LAMP = Lamp.values()[0];
+	private static final Lamp SECOND_LAMP = Lamp.values()[1];
+
+	@Test
+	public void fixesOnSeparateTicksAreCounted()
+	{
+		BreakModel model = new BreakModel();
+		model.visit(SessionLog.SESSION_START, 0, 1, 1000, 0);
+		model.visit(SessionLog.LAMP_FIXED, FIRST_LAMP.ordinal(), 10, 2000, 0);
+		model.visit(SessionLog.LEG, 0, 10, 2000, 9);
+		model.visit(SessionLog.LAMP_FIXED, FIRST_LAMP.ordinal(), 50, 3000, 0);
+		model.visit(SessionLog.SESSION_END, 0, 60, 4000, 2);
+		model.publish();
+
+		assertEquals(2, model.getTotalBreaks());
+		assertTrue(model.getWeight(FIRST_LAMP) > model.getWeight(SECOND_LAMP));
+	}
+
+	@Test
+	public void fixesLoggedTogetherOnOneTickAreSkipped()
+	{
+		BreakModel model = new BreakModel();
+		model.visit(SessionLog.SESSION_START, 0, 1, 1000, 0);
+		model.visit(SessionLog.LAMP_FIXED, FIRST_LAMP.ordinal(), 10, 2000, 0);
+		model.visit(SessionLog.LEG, 0, 10, 2000, 0);
+		model.visit(SessionLog.LAMP_FIXED, SECOND_LAMP.ordinal(), 10, 2000, 0);
+		model.visit(SessionLog.LAMP_FIXED, SECOND_LAMP.ordinal(), 30, 3000, 0);
+		model.publish();
+
+		assertEquals(1, model.getTotalBreaks());
+		assertTrue(model.getWeight(SECOND_LAMP) > model.getWeight(FIRST_LAMP));
+	}
+
+	@Test
+	public void sameTickInTheNextSessionIsNotABatch()
+	{
+		BreakModel model = new BreakModel();
+		model.visit(SessionLog.SESSION_START, 0, 1, 1000, 0);
+		model.visit(SessionLog.LAMP_FIXED, FIRST_LAMP.ordinal(), 10, 2000, 0);
+		model.visit(SessionLog.SESSION_START, 0, 1, 5000, 0);
+		model.visit(SessionLog.LAMP_FIXED, SECOND_LAMP.ordinal(), 10, 6000, 0);
+		model.publish();
+
+		assertEquals(2, model.getTotalBreaks());
+	}
+}
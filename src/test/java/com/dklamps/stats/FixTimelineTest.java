@@ -0,0 +1,83 @@
+package com.dklamps.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class FixTimelineTest
+{
+	private static final long SECOND = 1000L;
+	private static final long MINUTE = 60 * SECOND;
+	private static final long WINDOW = 15 * MINUTE;
+
+	@Test
+	public void singleFixHasNoRate()
+	{
+		FixTimeline timeline = new FixTimeline();
+		timeline.record(0);
+
+		assertEquals(0.0, timeline.getRatePerHour(SECOND), 0.0);
+		assertEquals(0.0, timeline.getRatePerHour(WINDOW, SECOND), 0.0);
+	}
+
+	@Test
+	public void steadyFixesGiveTheirRateFromTheSecondFixOn()
+	{
+		FixTimeline timeline = new FixTimeline();
+		for (int i = 0; i < 5; i++)
+		{
+			timeline.record(i * MINUTE);
+		}
+
+		assertEquals(60.0, timeline.getRatePerHour(4 * MINUTE), 1e-9);
+		assertEquals(60.0, timeline.getRatePerHour(WINDOW, 4 * MINUTE), 1e-9);
+		// Half way to the next fix the clock keeps running
+		assertEquals(4 * 3600.0 / 270, timeline.getRatePerHour(4 * MINUTE + 30 * SECOND), 1e-9);
+	}
+
+	@Test
+	public void windowOnlyCountsTheActiveTimeInsideIt()
+	{
+		FixTimeline timeline = new FixTimeline();
+		for (int i = 0; i <= 30; i++)
+		{
+			timeline.record(i * MINUTE);
+		}
+
+		long now = 30 * MINUTE + 30 * SECOND;
+		assertEquals(60.0, timeline.getRatePerHour(WINDOW, now), 1e-9);
+	}
+
+	@Test
+	public void breaksAreLeftOutOfTheRate()
+	{
+		FixTimeline timeline = new FixTimeline();
+		timeline.record(0);
+		timeline.record(MINUTE);
+		long resume = MINUTE + 2 * FixTimeline.IDLE_GAP_MILLIS;
+		timeline.record(resume);
+		timeline.record(resume + MINUTE);
+
+		assertEquals(2 * MINUTE, timeline.getActiveMillis(resume + MINUTE));
+		assertEquals(60.0, timeline.getRatePerHour(resume + MINUTE), 1e-9);
+		assertEquals(60.0, timeline.getRatePerHour(WINDOW, resume + MINUTE), 1e-9);
+		assertTrue(timeline.isIdle(resume + MINUTE + FixTimeline.IDLE_GAP_MILLIS + 1));
+	}
+
+	@Test
+	public void ringBufferKeepsTheNewestFixesAfterWrapping()
+	{
+		FixTimeline timeline = new FixTimeline();
+		int fixes = 3000;
+		for (int i = 0; i < fixes; i++)
+		{
+			// Slow fixes first, fast ones once the buffer has wrapped
+			timeline.record(i < 1000 ? i * MINUTE : 1000 * MINUTE + (i - 1000) * 10 * SECOND);
+		}
+
+		assertEquals(1024, timeline.size());
+		assertEquals(10 * SECOND, timeline.getMedianIntervalMillis());
+		long now = 1000 * MINUTE + (fixes - 1001) * 10 * SECOND;
+		assertEquals(360.0, timeline.getRatePerHour(WINDOW, now), 1e-9);
+	}
+}
@@ -0,0 +1,85 @@
+package com.dklamps.stats;
+
+import com.dklamps.enums.Lamp;
+import com.dklamps.enums.TargetType;
+import java.io.File;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class SessionHistoryTest
+{
+	private static final int FIRST_LAMP = Lamp.values()[0].ordinal();
+	private static final int SECOND_LAMP = Lamp.values()[1].ordinal();
+
+	@Test
+	public void totalReportedAfterTheFixIsKept() throws IOException
+	{
+		SessionHistory history = roundTrip(log ->
+		{
+			log.append(SessionLog.SESSION_START, 0, 1, 1000, 0);
+			log.append(SessionLog.TOTAL_FIXED, 0, 2, 2000, 100);
+			log.append(SessionLog.LAMP_FIXED, FIRST_LAMP, 3, 3000, 0);
+			log.append(SessionLog.TOTAL_FIXED, 0, 3, 3000, 101);
+		});
+		assertEquals(1L, history.getLampsFixed());
+		assertEquals(101L, history.getTotalLampsFixed());
+	}
+
+	@Test
+	public void totalReportedBeforeTheFixIsKept() throws IOException
+	{
+		SessionHistory history = roundTrip(log ->
+		{
+			log.append(SessionLog.SESSION_START, 0, 1, 1000, 0);
+			log.append(SessionLog.TOTAL_FIXED, 0, 2, 2000, 100);
+			log.append(SessionLog.TOTAL_FIXED, 0, 3, 3000, 101);
+			log.append(SessionLog.LAMP_FIXED, FIRST_LAMP, 3, 3000, 0);
+		});
+		assertEquals(1L, history.getLampsFixed());
+		assertEquals(101L, history.getTotalLampsFixed());
+	}
+
+	@Test
+	public void fixesWithoutAReportedTotalDoNotMoveIt() throws IOException
+	{
+		SessionHistory history = roundTrip(log ->
+		{
+			log.append(SessionLog.SESSION_START, 0, 1, 1000, 0);
+			log.append(SessionLog.TOTAL_FIXED, 0, 2, 2000, 100);
+			log.append(SessionLog.LAMP_FIXED, FIRST_LAMP, 3, 3000, 0);
+			log.append(SessionLog.LAMP_FIXED, SECOND_LAMP, 4, 4000, 0);
+			log.append(SessionLog.LEG, TargetType.LAMP.ordinal(), 4, 4000, 7);
+			log.append(SessionLog.SESSION_END, 0, 4, 4000, 2);
+		});
+		assertEquals(1, history.getSessions());
+		assertEquals(2L, history.getLampsFixed());
+		assertEquals(100L, history.getTotalLampsFixed());
+		assertEquals(7L, history.getLegTicks(TargetType.LAMP));
+		assertEquals(1, history.getLegCount(TargetType.LAMP));
+	}
+
+	private interface Writes
+	{
+		void to(SessionLog log);
+	}
+
+	private static SessionHistory roundTrip(Writes writes) throws IOException
+	{
+		File file = File.createTempFile("dklamps-session", ".log");
+		try
+		{
+			SessionLog log = new SessionLog(file, Runnable::run);
+			writes.to(log);
+			log.flush();
+
+			SessionHistory history = new SessionHistory();
+			new SessionLog(file, Runnable::run).read(history);
+			return history;
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+}